@@ -26,6 +26,9 @@ public class CategoryList {
     private static CategoryList instance = null;
     private List<Category> categories = new ArrayList<Category>();
 
+    // set when the categories were built from stale cached data and fresher data has been downloaded since
+    private volatile boolean outdated = false;
+
     private CategoryList() {}
 
     public static CategoryList getInstance() {
@@ -43,4 +46,12 @@ public class CategoryList {
 
     public int getCategoriesCount() { return categories.size(); }
 
+    public void clear() {
+        categories.clear();
+        outdated = false;
+    }
+
+    public boolean isOutdated() { return outdated; }
+    public void setOutdated(boolean outdated) { this.outdated = outdated; }
+
 }
@@ -21,11 +21,14 @@ package be.lorang.nuplayer.model;
  * This class represents an entry in the EPG
  */
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import com.google.gson.annotations.SerializedName;
 
 import java.time.ZonedDateTime;
 
-public class EPGEntry {
+public class EPGEntry implements Parcelable {
 
     @SerializedName("channelID") private String channelID;
     @SerializedName("title") private String title;
@@ -45,6 +48,28 @@ public class EPGEntry {
         this.endTime = endTime;
     }
 
+    protected EPGEntry(Parcel in) {
+        channelID = in.readString();
+        title = in.readString();
+        description = in.readString();
+        thumbnail = in.readString();
+        imageServer = in.readString();
+        startTime = in.readString();
+        endTime = in.readString();
+    }
+
+    public static final Creator<EPGEntry> CREATOR = new Creator<EPGEntry>() {
+        @Override
+        public EPGEntry createFromParcel(Parcel in) {
+            return new EPGEntry(in);
+        }
+
+        @Override
+        public EPGEntry[] newArray(int size) {
+            return new EPGEntry[size];
+        }
+    };
+
     public String getChannelID() {
         return channelID;
     }
@@ -110,4 +135,20 @@ public class EPGEntry {
     public void setEndTime(String endTime) {
         this.endTime = endTime;
     }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(channelID);
+        dest.writeString(title);
+        dest.writeString(description);
+        dest.writeString(thumbnail);
+        dest.writeString(imageServer);
+        dest.writeString(startTime);
+        dest.writeString(endTime);
+    }
 }
@@ -19,15 +19,21 @@ package be.lorang.nuplayer.model;
 
 /*
  * Class that will hold EPG data for a single day
+ *
+ * Parcelable so a whole day can be returned by EPGService in a ResultReceiver Bundle, the date is
+ * written as its ISO-8601 string
  */
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
 import com.google.gson.annotations.SerializedName;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
-public class EPGList {
+public class EPGList implements Parcelable {
 
     @SerializedName("date") private ZonedDateTime date;
     @SerializedName("epgData") private List<EPGEntry> epgData = new ArrayList<>();
@@ -36,6 +42,24 @@ public class EPGList {
         this.date = date;
     }
 
+    protected EPGList(Parcel in) {
+        String dateString = in.readString();
+        date = dateString != null ? ZonedDateTime.parse(dateString) : null;
+        epgData = in.createTypedArrayList(EPGEntry.CREATOR);
+    }
+
+    public static final Creator<EPGList> CREATOR = new Creator<EPGList>() {
+        @Override
+        public EPGList createFromParcel(Parcel in) {
+            return new EPGList(in);
+        }
+
+        @Override
+        public EPGList[] newArray(int size) {
+            return new EPGList[size];
+        }
+    };
+
     public ZonedDateTime getDate() {
         return date;
     }
@@ -51,4 +75,15 @@ public class EPGList {
     public void addEPGEntry(EPGEntry epgEntry) {
         epgData.add(epgEntry);
     }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(date != null ? date.toString() : null);
+        dest.writeTypedList(epgData);
+    }
 }
@@ -17,6 +17,8 @@
 
 package be.lorang.nuplayer.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.Log;
 import com.google.gson.annotations.SerializedName;
 
@@ -27,8 +29,10 @@ import java.util.List;
 /**
   * Describe a Program, multiple programs are stored in the ProgramList forming the Catalog
   * Each program (can) contain(s) multiple Videos
+  *
+  * Parcelable so it can be handed to activities and services as an Intent extra
   */
-public class Program {
+public class Program implements Parcelable {
 
     private final static String TAG = "Program";
 
@@ -71,6 +75,33 @@ public class Program {
         mIsSerie = isSerie;
     }
 
+    protected Program(Parcel in) {
+        mTitle = in.readString();
+        mDescription = in.readString();
+        mProgramName = in.readString();
+        mProgramType = in.readString();
+        mProgramUrl = in.readString();
+        mThumbnail = in.readString();
+        mAltImage = in.readString();
+        mBrand = in.readString();
+        mImageServer = in.readString();
+        mIsFavorite = in.readInt() != 0;
+        mIsSerie = in.readInt() != 0;
+        mCategories = in.createStringArrayList();
+    }
+
+    public static final Creator<Program> CREATOR = new Creator<Program>() {
+        @Override
+        public Program createFromParcel(Parcel in) {
+            return new Program(in);
+        }
+
+        @Override
+        public Program[] newArray(int size) {
+            return new Program[size];
+        }
+    };
+
     public String getTitle() {
         return mTitle;
     }
@@ -170,4 +201,25 @@ public class Program {
 
     public List<String> getCategories() { return mCategories; }
 
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mTitle);
+        dest.writeString(mDescription);
+        dest.writeString(mProgramName);
+        dest.writeString(mProgramType);
+        dest.writeString(mProgramUrl);
+        dest.writeString(mThumbnail);
+        dest.writeString(mAltImage);
+        dest.writeString(mBrand);
+        dest.writeString(mImageServer);
+        dest.writeInt(mIsFavorite ? 1 : 0);
+        dest.writeInt(mIsSerie ? 1 : 0);
+        dest.writeStringList(mCategories);
+    }
+
 }
@@ -36,6 +36,9 @@ public class ProgramList {
     private List<Program> mSeries = new ArrayList<Program>();
     private List<Program> mFavorites = new ArrayList<Program>();
 
+    // set when the catalog was built from stale cached data and fresher data has been downloaded since
+    private volatile boolean outdated = false;
+
     private ProgramList() {}
 
     public static ProgramList getInstance() {
@@ -50,12 +53,44 @@ public class ProgramList {
         mPrograms.add(p);
     }
 
+    /*
+     * Swap in a freshly built catalog, call on the main thread as the UI iterates the lists.
+     * Favorites and series are flags on the Programs, they're cleared and set again on the new
+     * Programs so they don't have to be downloaded again.
+     */
+    public void setPrograms(List<Program> programs) {
+
+        List<String> favoriteTitles = new ArrayList<>();
+        for(Program program : mFavorites) {
+            favoriteTitles.add(program.getTitle());
+        }
+        List<String> seriesNames = new ArrayList<>();
+        for(Program program : mSeries) {
+            seriesNames.add(program.getProgramName());
+        }
+
+        mPrograms = programs;
+        mFavorites = new ArrayList<>();
+        mSeries = new ArrayList<>();
+
+        for(String title : favoriteTitles) {
+            setIsFavorite(title, true);
+        }
+        for(String programName : seriesNames) {
+            setIsSerie(programName);
+        }
+    }
+
     public void clear() {
         mPrograms.clear();
         mSeries.clear();
         mFavorites.clear();
+        outdated = false;
     }
 
+    public boolean isOutdated() { return outdated; }
+    public void setOutdated(boolean outdated) { this.outdated = outdated; }
+
     public void sort() {
         mPrograms.sort(Comparator.comparing(Program::getTitle));
     }
@@ -17,6 +17,8 @@
 
 package be.lorang.nuplayer.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.Log;
 
 import com.google.gson.annotations.SerializedName;
@@ -25,8 +27,10 @@ import java.util.Arrays;
 
 /**
  * Describe a Video, multiple Videos are stored in the VideoList forming a Program
+ *
+ * Parcelable so it can be handed to activities and services as an Intent extra
  */
-public class Video {
+public class Video implements Parcelable {
 
     @SerializedName("title") private String mTitle = "";
     @SerializedName("subTitle") private String mSubTitle = "";
@@ -55,6 +59,44 @@ public class Video {
 
     public Video() { }
 
+    protected Video(Parcel in) {
+        mTitle = in.readString();
+        mSubTitle = in.readString();
+        mSeasonName = in.readString();
+        mSeasonTitle = in.readString();
+        mEpisodeNumber = in.readInt();
+        mDuration = in.readInt();
+        mThumbnail = in.readString();
+        mVideoId = in.readString();
+        mPubId = in.readString();
+        mBrand = in.readString();
+        mProgramName = in.readString();
+        mProgramTitle = in.readString();
+        mAssetPath = in.readString();
+        mUrl = in.readString();
+        mWhatsonId = in.readString();
+        mProgramWhatsonId = in.readString();
+        mAllowedRegion = in.readString();
+        mOnTime = in.readString();
+        mOffTime = in.readString();
+        mImageServer = in.readString();
+        mStreamType = in.readString();
+        mProgressPct = in.readInt();
+        mCurrentPosition = in.readInt();
+    }
+
+    public static final Creator<Video> CREATOR = new Creator<Video>() {
+        @Override
+        public Video createFromParcel(Parcel in) {
+            return new Video(in);
+        }
+
+        @Override
+        public Video[] newArray(int size) {
+            return new Video[size];
+        }
+    };
+
     public Video(String title,
                  String subTitle,
                  String seasonName,
@@ -197,4 +239,36 @@ public class Video {
 
     public int getCurrentPosition() { return mCurrentPosition; }
     public void setCurrentPosition(int position) { mCurrentPosition = position; }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mTitle);
+        dest.writeString(mSubTitle);
+        dest.writeString(mSeasonName);
+        dest.writeString(mSeasonTitle);
+        dest.writeInt(mEpisodeNumber);
+        dest.writeInt(mDuration);
+        dest.writeString(mThumbnail);
+        dest.writeString(mVideoId);
+        dest.writeString(mPubId);
+        dest.writeString(mBrand);
+        dest.writeString(mProgramName);
+        dest.writeString(mProgramTitle);
+        dest.writeString(mAssetPath);
+        dest.writeString(mUrl);
+        dest.writeString(mWhatsonId);
+        dest.writeString(mProgramWhatsonId);
+        dest.writeString(mAllowedRegion);
+        dest.writeString(mOnTime);
+        dest.writeString(mOffTime);
+        dest.writeString(mImageServer);
+        dest.writeString(mStreamType);
+        dest.writeInt(mProgressPct);
+        dest.writeInt(mCurrentPosition);
+    }
 }
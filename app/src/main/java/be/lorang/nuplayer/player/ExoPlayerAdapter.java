@@ -25,6 +25,7 @@ import androidx.leanback.media.PlaybackGlueHost;
 import androidx.leanback.media.PlayerAdapter;
 import androidx.leanback.media.SurfaceHolderGlueHost;
 import be.lorang.nuplayer.R;
+import be.lorang.nuplayer.utils.NetworkGovernor;
 
 import android.support.v4.media.MediaDescriptionCompat;
 import android.support.v4.media.session.MediaSessionCompat;
@@ -52,6 +53,7 @@ import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.util.DebugTextViewHelper;
 import com.google.android.exoplayer2.ui.SubtitleView;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.video.VideoListener;
 
 import java.io.UnsupportedEncodingException;
@@ -76,6 +78,14 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
             mHandler.postDelayed(this, getUpdatePeriod());
         }
     };
+    // Reports buffer and bandwidth to the NetworkGovernor while prepared
+    final Runnable mGovernorRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateNetworkGovernor();
+            mHandler.postDelayed(this, getUpdatePeriod());
+        }
+    };
     final Handler mHandler = new Handler();
     boolean mInitialized = false;
     Uri mMediaSourceUri = null;
@@ -87,6 +97,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
     private MediaSessionConnector mediaSessionConnector;
 
     private DefaultTrackSelector trackSelector;
+    private DefaultBandwidthMeter bandwidthMeter;
     private boolean subtitlesEnabled = false;
 
     private TextView debugTextView;
@@ -107,7 +118,12 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
                 .setPreferredTextLanguage("nl")
         );
 
-        mPlayer = new SimpleExoPlayer.Builder(context).setTrackSelector(trackSelector).build();
+        bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(context);
+
+        mPlayer = new SimpleExoPlayer.Builder(context)
+                .setTrackSelector(trackSelector)
+                .setBandwidthMeter(bandwidthMeter)
+                .build();
         mPlayer.addListener(this);
         mPlayer.addVideoListener(this);
 
@@ -180,6 +196,9 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
             mediaSession.release();
         }
 
+        mHandler.removeCallbacks(mGovernorRunnable);
+        NetworkGovernor.release(this);
+
         changeToUninitialized();
         mHasDisplay = false;
         mPlayer.release();
@@ -342,6 +361,9 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
         mPlayer.setMediaItem(mediaItem);
         mPlayer.prepare();
 
+        mHandler.removeCallbacks(mGovernorRunnable);
+        mHandler.post(mGovernorRunnable);
+
         notifyBufferingStartEnd();
         getCallback().onPlayStateChanged(ExoPlayerAdapter.this);
     }
@@ -355,6 +377,24 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
         return mInitialized && (mSurfaceHolderGlueHost == null || mHasDisplay);
     }
 
+    // Let deferrable HTTPClient requests make way while the buffer is low, see NetworkGovernor
+    void updateNetworkGovernor() {
+
+        int playbackState = mPlayer.getPlaybackState();
+        if (playbackState == ExoPlayer.STATE_IDLE || playbackState == ExoPlayer.STATE_ENDED) {
+            NetworkGovernor.release(this);
+            return;
+        }
+
+        Format videoFormat = mPlayer.getVideoFormat();
+        NetworkGovernor.update(this,
+                playbackState == ExoPlayer.STATE_BUFFERING,
+                mPlayer.getPlayWhenReady(),
+                mPlayer.getTotalBufferedDuration(),
+                bandwidthMeter.getBitrateEstimate(),
+                videoFormat != null ? videoFormat.bitrate : Format.NO_VALUE);
+    }
+
     public void setMediaSessionState(boolean state) {
         if(mediaSession != null) {
             mediaSession.setActive(state);
@@ -507,6 +547,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
             getCallback().onPlayCompleted(ExoPlayerAdapter.this);
         }
         notifyBufferingStartEnd();
+        updateNetworkGovernor();
     }
 
     @Override
@@ -39,8 +39,6 @@ import androidx.leanback.widget.ArrayObjectAdapter;
 import androidx.leanback.widget.PlaybackControlsRow;
 import androidx.leanback.widget.SeekBar;
 
-import com.google.gson.Gson;
-
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -332,7 +330,7 @@ public class VideoMediaPlayerGlue<T extends PlayerAdapter> extends PlaybackTrans
                     resumePointsIntent.putExtra("ACTION", ResumePointsService.ACTION_UPDATE_RESUME_POINT);
                     resumePointsIntent.putExtra("vrtnu_site_profile_vt", resultData.getString("vrtnu_site_profile_vt"));
                     resumePointsIntent.putExtra("PLAYER_CURRENT_POSITION", position);
-                    resumePointsIntent.putExtra("VIDEO_OBJECT", new Gson().toJson(video));
+                    resumePointsIntent.putExtra("VIDEO_OBJECT", video);
 
                     resumePointsIntent.putExtra(ResumePointsService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
                         @Override
@@ -16,7 +16,6 @@
  *
  */
 
-
 package be.lorang.nuplayer.player;
 
 import android.content.Intent;
@@ -28,7 +27,6 @@ import androidx.fragment.app.FragmentTransaction;
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.Video;
 
-import com.google.gson.Gson;
 
 public class VideoPlaybackActivity extends FragmentActivity {
 
@@ -45,10 +43,7 @@ public class VideoPlaybackActivity extends FragmentActivity {
 
         // get passed Video object and URL
         videoUrl = getIntent().getExtras().getString("MPEG_DASH_URL");
-        String videoJson = getIntent().getExtras().getString("VIDEO_OBJECT");
-        if(videoJson != null) {
-            video = new Gson().fromJson(videoJson, Video.class);
-        }
+        video = getIntent().getParcelableExtra("VIDEO_OBJECT");
 
         drmToken = getIntent().getExtras().getString("VUALTO_TOKEN");
 
@@ -26,10 +26,11 @@ import android.os.ResultReceiver;
 import android.util.Log;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.SharedGson;
+import be.lorang.nuplayer.utils.HTTPResponse;
 import be.lorang.nuplayer.ui.MainActivity;
 
 import org.json.JSONObject;
@@ -121,10 +122,10 @@ public class AccessTokenService extends IntentService {
             }
 
             // Parse cookies
-            HttpCookie vrtnu_site_profile_dt_cookie = new Gson().fromJson(vrtnu_site_profile_dt_json, HttpCookie.class);
-            HttpCookie vrtnu_site_profile_et_cookie = new Gson().fromJson(vrtnu_site_profile_et_json, HttpCookie.class);
-            HttpCookie vrtnu_site_profile_rt_cookie = new Gson().fromJson(vrtnu_site_profile_rt_json, HttpCookie.class);
-            HttpCookie vrtnu_site_profile_vt_cookie = new Gson().fromJson(vrtnu_site_profile_vt_json, HttpCookie.class);
+            HttpCookie vrtnu_site_profile_dt_cookie = SharedGson.getInstance().fromJson(vrtnu_site_profile_dt_json, HttpCookie.class);
+            HttpCookie vrtnu_site_profile_et_cookie = SharedGson.getInstance().fromJson(vrtnu_site_profile_et_json, HttpCookie.class);
+            HttpCookie vrtnu_site_profile_rt_cookie = SharedGson.getInstance().fromJson(vrtnu_site_profile_rt_json, HttpCookie.class);
+            HttpCookie vrtnu_site_profile_vt_cookie = SharedGson.getInstance().fromJson(vrtnu_site_profile_vt_json, HttpCookie.class);
 
             // Add cookies to running CookieStore, this will make sure all Cookies are sent
             // on every HTTP request we make. CookieManager is non-persistent/in-memory only.
@@ -154,16 +155,17 @@ public class AccessTokenService extends IntentService {
                 Map<String, String> headers = new HashMap<>();
                 headers.put("Referer", getString(R.string.service_auth_referer_link));
 
-                returnObject = httpClient.getRequest(getString(R.string.service_access_token_refresh), headers);
+                HTTPResponse response = httpClient.getRequest(getString(R.string.service_access_token_refresh), headers);
+                returnObject = response.getBody();
 
                 Log.d(TAG, "Refresh token result = " + returnObject.toString());
 
-                if(httpClient.getResponseCode() != 200) {
+                if(response.getCode() != 200) {
                     String errorMsg = "";
                     if(returnObject.has("error")) {
                         errorMsg = returnObject.getString("error");
                     }
-                    errorMsg += " - " + httpClient.getResponseCode() + ": " + httpClient.getResponseMessage();
+                    errorMsg += " - " + response.getCode() + ": " + response.getMessage();
                     throw new HttpException(errorMsg);
                 }
 
@@ -177,8 +179,8 @@ public class AccessTokenService extends IntentService {
                             cookieName.equals("vrtnu-site_profile_rt") ||
                             cookieName.equals("vrtnu-site_profile_vt")
                     ) {
-                        Log.d(TAG, "Setting cookie as preference = " + new Gson().toJson(cookie, HttpCookie.class));
-                        editor.putString(cookie.getName(), new Gson().toJson(cookie, HttpCookie.class));
+                        Log.d(TAG, "Setting cookie as preference = " + SharedGson.getInstance().toJson(cookie, HttpCookie.class));
+                        editor.putString(cookie.getName(), SharedGson.getInstance().toJson(cookie, HttpCookie.class));
                     }
                 }
 
@@ -190,7 +192,7 @@ public class AccessTokenService extends IntentService {
             vrtnu_site_profile_vt_json = prefs.getString("vrtnu-site_profile_vt", null);
 
             if(vrtnu_site_profile_vt_json != null) {
-                HttpCookie resultToken = new Gson().fromJson(vrtnu_site_profile_vt_json, HttpCookie.class);
+                HttpCookie resultToken = SharedGson.getInstance().fromJson(vrtnu_site_profile_vt_json, HttpCookie.class);
                 resultData.putString("vrtnu_site_profile_vt", resultToken.getValue());
             }
 
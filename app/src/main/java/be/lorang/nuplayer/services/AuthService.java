@@ -25,11 +25,11 @@ import android.os.Bundle;
 import android.os.ResultReceiver;
 import android.util.Log;
 
-import com.google.gson.Gson;
-
 import be.lorang.nuplayer.BuildConfig;
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.ui.MainActivity;
+import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.SharedGson;
 import be.lorang.nuplayer.utils.Utils;
 import okhttp3.FormBody;
 import okhttp3.JavaNetCookieJar;
@@ -72,8 +72,9 @@ import java.util.Iterator;
  * https://token.vrt.be/vrtnuinitlogin?provider=site&destination=https://www.vrt.be/vrtnu/
  *
  * The project's HTTPClient from Utils was unable to authenticate anymore, it has been replaced by
- * OkHttp library, it is only in use here in AuthService. All other Services are still using our own
- * HTTPClient, the JSON caching feature is still heavily used but can probably be replaced by OkHttp's Caching
+ * OkHttp library here in AuthService. All other Services are still using our own HTTPClient (for
+ * its JSON caching feature), which is backed by the same OkHttpClient so the connection pool is shared.
+ * Only the CookieJar differs as authentication needs direct access to the CookieManager
  *
  */
 
@@ -142,7 +143,7 @@ public class AuthService extends IntentService {
             // setup OkHttp client and cookiejar
             cookieManager = (CookieManager)CookieHandler.getDefault();
             cookieJar = new JavaNetCookieJar(cookieManager);
-            httpClient = new OkHttpClient()
+            httpClient = HTTPClient.getOkHttpClient()
                     .newBuilder()
                     .cookieJar(cookieJar)
                     .build();
@@ -318,8 +319,8 @@ public class AuthService extends IntentService {
                         cookieName.equals("vrtnu-site_profile_vt")
                 ) {
                     appendDebugLog("[STEP 3] Found cookie " + cookieName + " with value " + cookie.getValue());
-                    Log.d(TAG, "Setting cookie as preference = " + new Gson().toJson(cookie, HttpCookie.class));
-                    editor.putString(cookie.getName(), new Gson().toJson(cookie, HttpCookie.class));
+                    Log.d(TAG, "Setting cookie as preference = " + SharedGson.getInstance().toJson(cookie, HttpCookie.class));
+                    editor.putString(cookie.getName(), SharedGson.getInstance().toJson(cookie, HttpCookie.class));
                     cookiesCount++;
                 }
             }
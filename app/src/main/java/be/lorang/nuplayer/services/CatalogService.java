@@ -21,6 +21,8 @@ import android.app.Activity;
 import android.app.IntentService;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ResultReceiver;
 import android.util.Log;
 
@@ -28,6 +30,9 @@ import com.bumptech.glide.load.HttpException;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.Utils;
+import be.lorang.nuplayer.utils.RequestPriority;
 import be.lorang.nuplayer.model.Program;
 import be.lorang.nuplayer.model.ProgramList;
 
@@ -35,6 +40,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class CatalogService extends IntentService {
     private static final String TAG = "CatalogService";
@@ -69,21 +76,44 @@ public class CatalogService extends IntentService {
         ResultReceiver receiver = workIntent.getParcelableExtra(CatalogService.BUNDLED_LISTENER);
 
         ProgramList programList = ProgramList.getInstance();
-        if(programList.getPrograms().size() == 0) {
+        String requestTag = workIntent.getStringExtra(HTTPClient.REQUEST_TAG);
+        httpClient = new HTTPClient(RequestPriority.fromName(
+                workIntent.getStringExtra(HTTPClient.REQUEST_PRIORITY), RequestPriority.INTERACTIVE));
+
+        // fresher catalog data got downloaded after we've built the catalog from a stale copy,
+        // rebuild it. The current catalog stays in place until the new one is complete.
+        if(programList.getPrograms().size() == 0 || programList.isOutdated()) {
 
             try {
 
+                Log.d(TAG, "Building catalog");
+                programList.setOutdated(false);
+                List<Program> programs = new ArrayList<>();
+
                 // Get entire catalog of available Programs per programType
                 for(String programType : programTypes) {
 
                     url = String.format(getString(R.string.service_catalog_catalog_url), programType);
                     Log.d(TAG, "Getting catalog part " + programType + " at " + url);
-                    jsonObject = httpClient.getCachedRequest(getCacheDir(), url);
+                    // return the last known catalog immediately if we have one, it's refreshed in the background
+                    HTTPResponse response = httpClient.getCachedRequestAsync(getCacheDir(), url,
+                            (updatedUrl, object) -> ProgramList.getInstance().setOutdated(true), requestTag, null).await();
+
+                    // CatalogFragment went away, keep the catalog we have and drop the partial one
+                    if (response.isCancelled()) {
+                        Log.d(TAG, "Loading catalog cancelled");
+                        if(programList.getPrograms().size() > 0) {
+                            programList.setOutdated(true);
+                        }
+                        return;
+                    }
 
-                    if (httpClient.getResponseCode() != 200) {
+                    if (response.getCode() != 200) {
                         continue;
                     }
 
+                    jsonObject = response.getBody();
+
                     items = jsonObject.getJSONArray("data");
 
                     for (int i = 0; i < items.length(); i++) {
@@ -97,8 +127,8 @@ public class CatalogService extends IntentService {
 
                         // we replace the image server with the one defined in urls.xml
                         // this prepends the (often) 'missing' 'https://' and allows us to query our own size ('orig' can go up to 18MB each(!))
-                        String thumbnail = programJSON.optString(TAG_THUMBNAIL).replaceFirst("^(https:)?//images.vrt.be/orig/", "");
-                        String altImage = programJSON.optString(TAG_ALTIMAGE).replaceFirst("^(https:)?//images.vrt.be/orig/", "");
+                        String thumbnail = Utils.stripImageServer(programJSON.optString(TAG_THUMBNAIL));
+                        String altImage = Utils.stripImageServer(programJSON.optString(TAG_ALTIMAGE));
                         String imageServer = getString(R.string.model_image_server);
 
                         // we only use the 1st brand for now in the array
@@ -121,14 +151,15 @@ public class CatalogService extends IntentService {
                                 false
                         );
 
-                        programList.addProgram(program);
+                        programs.add(program);
 
                         Log.d(TAG, "Adding to catalog : " + title + " " + programName + " " + programType + " " + programUrl);
                     }
                 }
 
-                // Sort catalog
-                programList.sort();
+                // Sort catalog and swap it in on the main thread, the result is posted after it
+                programs.sort(Comparator.comparing(Program::getTitle));
+                new Handler(Looper.getMainLooper()).post(() -> programList.setPrograms(programs));
 
                 receiver.send(Activity.RESULT_OK, resultData);
 
@@ -136,6 +167,10 @@ public class CatalogService extends IntentService {
                 String message = "Could not download VRT.NU catalog:: " + e.getMessage();
                 Log.e(TAG, message);
                 e.printStackTrace();
+                // try the rebuild again next time
+                if(programList.getPrograms().size() > 0) {
+                    programList.setOutdated(true);
+                }
                 resultData.putString("MSG", message);
                 receiver.send(Activity.RESULT_CANCELED, resultData);
             }
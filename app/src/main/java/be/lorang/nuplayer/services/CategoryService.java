@@ -30,6 +30,9 @@ import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.Category;
 import be.lorang.nuplayer.model.CategoryList;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.Utils;
+import be.lorang.nuplayer.utils.JSONPathExtractor;
 import be.lorang.nuplayer.model.ProgramList;
 
 import org.json.JSONArray;
@@ -51,6 +54,11 @@ public class CategoryService extends IntentService {
     public final static String ACTION_GET_CATEGORIES = "getCategories";
     public final static String ACTION_SET_CATEGORIES = "setCategories";
 
+    //[":items"].par[":items"].categories.items
+    private static final String PATH_CATEGORIES = ":items/par/:items/categories/items";
+    private static final JSONPathExtractor categoriesExtractor = new JSONPathExtractor()
+            .add(PATH_CATEGORIES, PATH_CATEGORIES);
+
     private HTTPClient httpClient = new HTTPClient();
     private Bundle resultData = new Bundle();
 
@@ -93,25 +101,29 @@ public class CategoryService extends IntentService {
 
         CategoryList categoryList = CategoryList.getInstance();
 
+        // Rebuild if fresher data was downloaded since the list was built from a stale copy
+        if(categoryList.isOutdated()) {
+            categoryList.clear();
+        }
+
         // Return immediately if categories list already set
         if(categoryList.getCategoriesCount() > 0){
             return;
         }
 
-        // Get categories
-        JSONObject returnObject = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_categories_url), 1440);
+        // Get categories, a stale copy is returned immediately and refreshed in the background
+        HTTPResponse response = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_categories_url),
+                categoriesExtractor, (url, body) -> CategoryList.getInstance().setOutdated(true));
 
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
-        //[":items"].par[":items"].categories.items
-        JSONArray categories = returnObject
-                .getJSONObject(":items")
-                .getJSONObject("par")
-                .getJSONObject(":items")
-                .getJSONObject("categories")
-                .getJSONArray("items");
+        JSONPathExtractor.Result paths = response.getDecodedBody();
+        JSONArray categories = paths != null ? paths.optJSONArray(PATH_CATEGORIES) : null;
+        if(categories == null) {
+            throw new JSONException("No categories found in " + getString(R.string.service_categories_url));
+        }
 
         String imageServer = getString(R.string.model_image_server);
 
@@ -121,7 +133,7 @@ public class CategoryService extends IntentService {
 
             String name = categoryJSON.getString("name");
             String title = categoryJSON.getString("title");
-            String thumbnail = categoryJSON.optString("imageStoreUrl").replaceFirst("^(https:)?//images.vrt.be/orig/", "");
+            String thumbnail = Utils.stripImageServer(categoryJSON.optString("imageStoreUrl"));
 
             Log.d(TAG, "adding category " + title);
 
@@ -143,12 +155,14 @@ public class CategoryService extends IntentService {
 
         // Get all Programs of certain category
         String url = String.format(getString(R.string.service_categories_program_url), category);
-        JSONObject returnObject = httpClient.getCachedRequest(getCacheDir(), url, 60);
+        HTTPResponse response = httpClient.getCachedRequest(getCacheDir(), url);
 
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
+        JSONObject returnObject = response.getBody();
+
         JSONArray data = returnObject.getJSONArray("data");
         ProgramList programList = ProgramList.getInstance();
 
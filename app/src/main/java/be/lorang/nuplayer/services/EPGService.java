@@ -25,7 +25,6 @@ import android.os.ResultReceiver;
 import android.util.Log;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -44,6 +43,9 @@ import be.lorang.nuplayer.model.ChannelList;
 import be.lorang.nuplayer.model.EPGEntry;
 import be.lorang.nuplayer.model.EPGList;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.RequestPriority;
+import be.lorang.nuplayer.utils.Utils;
 
 /*
  * Service to fetch EPG data used to update Live TV cards and EPGList
@@ -80,19 +82,26 @@ public class EPGService extends IntentService {
     protected void onHandleIntent(Intent workIntent) {
 
         ResultReceiver receiver = workIntent.getParcelableExtra(CatalogService.BUNDLED_LISTENER);
+        httpClient = new HTTPClient(RequestPriority.fromName(
+                workIntent.getStringExtra(HTTPClient.REQUEST_PRIORITY), RequestPriority.INTERACTIVE));
 
         try {
 
             String action = workIntent.getExtras().getString("ACTION");
             String epgDate = workIntent.getExtras().getString("EPG_DATE", "");
+            String requestTag = workIntent.getExtras().getString(HTTPClient.REQUEST_TAG);
 
             switch (action) {
                 case ACTION_UPDATE_LIVE_TV_EPG:
                     updateLiveTVEPG();
                     break;
                 case ACTION_GET_EPG:
-                    EPGList epgData = getEPG(ZonedDateTime.parse(epgDate));
-                    resultData.putString("EPG_DATA", new Gson().toJson(epgData));
+                    EPGList epgData = getEPG(ZonedDateTime.parse(epgDate), requestTag);
+                    if(epgData == null) {
+                        // cancelled by TVGuideFragment, nobody is waiting for the result
+                        return;
+                    }
+                    resultData.putParcelable("EPG_DATA", epgData);
                     break;
             }
 
@@ -128,11 +137,13 @@ public class EPGService extends IntentService {
             String url = String.format(getString(R.string.service_epg_url),
                     formatter.format(zonedDateTime));
 
-            JSONObject returnObject = httpClient.getCachedRequest(getCacheDir(), url, 60);
-            if (httpClient.getResponseCode() != 200) {
-                throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+            HTTPResponse response = httpClient.getCachedRequest(getCacheDir(), url);
+            if (response.getCode() != 200) {
+                throw new HttpException(response.getCode() + ": " + response.getMessage());
             }
 
+            JSONObject returnObject = response.getBody();
+
             Iterator<String> keys = returnObject.keys();
             while(keys.hasNext()) {
                 String channel = keys.next();
@@ -187,7 +198,8 @@ public class EPGService extends IntentService {
     }
 
 
-    private EPGList getEPG(ZonedDateTime epgDate) throws JSONException, IOException {
+    // returns null if the request got cancelled (by tag)
+    private EPGList getEPG(ZonedDateTime epgDate, String requestTag) throws JSONException, IOException {
 
         String url = String.format(getString(R.string.service_epg_url),
                 formatter.format(epgDate));
@@ -196,11 +208,18 @@ public class EPGService extends IntentService {
 
         EPGList epgList = new EPGList(epgDate);
 
-        JSONObject returnObject = httpClient.getCachedRequest(getCacheDir(), url, 60);
-        if (httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.getCachedRequestAsync(getCacheDir(), url, requestTag, null).await();
+        if (response.isCancelled()) {
+            Log.d(TAG, "Loading EPG of " + epgDate + " cancelled");
+            return null;
         }
 
+        if (response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
+        }
+
+        JSONObject returnObject = response.getBody();
+
         Iterator<String> keys = returnObject.keys();
         while(keys.hasNext()) {
             String channel = keys.next();
@@ -213,7 +232,7 @@ public class EPGService extends IntentService {
                 String description = epgEntryJSON.optString("description");
                 String startTime = epgEntryJSON.getString("startTime");
                 String endTime = epgEntryJSON.getString("endTime");
-                String thumbnail = epgEntryJSON.optString("image").replaceFirst("^(https:)?//images.vrt.be/orig/", "");
+                String thumbnail = Utils.stripImageServer(epgEntryJSON.optString("image"));
 
                 EPGEntry epgEntry = new EPGEntry(
                         channel,
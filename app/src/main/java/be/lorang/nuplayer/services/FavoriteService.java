@@ -25,10 +25,10 @@ import android.os.ResultReceiver;
 import android.util.Log;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
 import be.lorang.nuplayer.model.Program;
 import be.lorang.nuplayer.model.ProgramList;
 
@@ -75,7 +75,7 @@ public class FavoriteService extends IntentService {
                     populateFavorites();
                     break;
                 case FavoriteService.ACTION_UPDATE_FAVORITE:
-                    Program program = new Gson().fromJson(workIntent.getExtras().getString("PROGRAM_OBJECT"), Program.class);
+                    Program program = workIntent.getParcelableExtra("PROGRAM_OBJECT");
                     boolean isFavorite = workIntent.getExtras().getBoolean("IS_FAVORITE", false);
                     String whatsonId = workIntent.getExtras().getString("WHATSONID", "");
                     updateFavorite(program, isFavorite, whatsonId);
@@ -106,11 +106,13 @@ public class FavoriteService extends IntentService {
             headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
         }
 
-        JSONObject returnObject = httpClient.getRequest(getString(R.string.service_catalog_favorites_url), headers);
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.getRequest(getString(R.string.service_catalog_favorites_url), headers);
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
+        JSONObject returnObject = response.getBody();
+
         // Match on Title, it's the best option available
         // whatsonId is missing in Program
         // programUrl is used inconsistently by VRT API (starting with (https://)?<base url>, ending in .html or /)
@@ -154,9 +156,9 @@ public class FavoriteService extends IntentService {
             headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
         }
 
-        httpClient.postRequest(url, "application/json", postData, headers);
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.postRequest(url, "application/json", postData, headers);
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
         Log.d(TAG, "Favorite updated successfully");
@@ -26,15 +26,13 @@ import android.util.Log;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
 import be.lorang.nuplayer.model.Video;
 import be.lorang.nuplayer.model.VideoList;
 
 import com.bumptech.glide.load.HttpException;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import static be.lorang.nuplayer.services.ProgramService.parseVideoFromJSON;
+import org.json.JSONException;
 
 /*
  * This class will load the 10 most recent published Videos
@@ -50,7 +48,6 @@ public class LatestService extends IntentService {
     private Bundle resultData = new Bundle();
 
     private HTTPClient httpClient = new HTTPClient();
-    private JSONObject returnObject;
     private int size = 10;
     private int maxSize = 100;
 
@@ -103,19 +100,22 @@ public class LatestService extends IntentService {
 
             Log.d(TAG, "Getting program details at: " + url);
 
-            // Get program details
-            returnObject = httpClient.getCachedRequest(getCacheDir(), url);
+            // Get program details, decoded straight into Videos
+            SearchResults.Decoder decoder = new SearchResults.Decoder(getString(R.string.model_image_server));
+            HTTPResponse response = httpClient.getCachedRequest(getCacheDir(), url, decoder);
 
-            if (httpClient.getResponseCode() != 200) {
-                throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+            if (response.getCode() != 200) {
+                throw new HttpException(response.getCode() + ": " + response.getMessage());
             }
 
-            JSONObject meta = returnObject.getJSONObject("meta");
-            JSONArray items = returnObject.getJSONArray("results");
+            SearchResults searchResults = response.getDecodedBody();
+            if (searchResults == null) {
+                throw new JSONException("No search results in response of " + url);
+            }
 
             // Update VideoList object with latest numbers of available / loaded
-            int videosAvailable = meta.getInt("total_results");
-            int videosLoaded = videoList.getVideosLoaded() + items.length();
+            int videosAvailable = searchResults.getTotalResults();
+            int videosLoaded = videoList.getVideosLoaded() + searchResults.getVideos().size();
 
             videoList.setVideosAvailable(videosAvailable);
             videoList.setVideosLoaded(videosLoaded);
@@ -123,10 +123,7 @@ public class LatestService extends IntentService {
             Log.d(TAG, "Available = " + videosAvailable);
             Log.d(TAG, "Loaded = " + videosLoaded);
 
-            for (int i = 0; i < items.length(); i++) {
-                JSONObject program = items.getJSONObject(i);
-                String imageServer = getString(R.string.model_image_server);
-                Video video = parseVideoFromJSON(program, imageServer);
+            for (Video video : searchResults.getVideos()) {
                 videoList.addVideo(video);
                 Log.d(TAG, "Adding video : " + video.getTitle());
             }
@@ -92,7 +92,7 @@ public class LogoutService extends IntentService {
             // setup OkHttp client and cookiejar
             CookieManager cookieManager = (CookieManager) CookieHandler.getDefault();
             JavaNetCookieJar cookieJar = new JavaNetCookieJar(cookieManager);
-            OkHttpClient httpClient = new OkHttpClient()
+            OkHttpClient httpClient = HTTPClient.getOkHttpClient()
                     .newBuilder()
                     .cookieJar(cookieJar)
                     .build();
@@ -29,11 +29,12 @@ import be.lorang.nuplayer.model.Program;
 import be.lorang.nuplayer.model.ResumePoint;
 import be.lorang.nuplayer.model.ResumePointList;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.JSONPathExtractor;
 import be.lorang.nuplayer.model.Video;
 import be.lorang.nuplayer.model.VideoList;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -60,252 +61,113 @@ public class ProgramService extends IntentService {
 
     private HTTPClient httpClient = new HTTPClient();
     private Program program;
-    private JSONObject returnObject;
     private LinkedHashMap<String,String> seasons;
     private int size = 10;
 
-    public static final String TAG_TITLE = "title";
-    public static final String TAG_SUBTITLE = "subtitle";
-    public static final String TAG_SEASONNAME = "seasonName";
-    public static final String TAG_SEASONTITLE = "seasonTitle";
-    public static final String TAG_EPISODENR = "episodeNumber";
-    public static final String TAG_DURATION = "duration";
-    public static final String TAG_THUMBNAIL = "videoThumbnailUrl";
-    public static final String TAG_VIDEOID = "videoId";
-    public static final String TAG_PUBID = "publicationId";
-    public static final String TAG_BRANDS = "brands";
-    public static final String TAG_PROGRAMNAME = "programName";
-    public static final String TAG_PROGRAMTITLE = "programTitle";
-    public static final String TAG_ASSETPATH = "assetPath"; // FIXME
-    public static final String TAG_URL = "url";
-    public static final String TAG_WHATSONID = "whatsonId";
-    public static final String TAG_PROGRAMWHATSONID = "programWhatsonId";
-    public static final String TAG_ALLOWEDREGION = "allowedRegion";
-    public static final String TAG_ONTIME = "onTime";
-    public static final String TAG_OFFTIME = "offTime";
+    // Season lists (":itemsOrder" + ":items") in the program model.json, in order of preference
+    private static final String[] SEASON_PATHS = {
+            ":items/parsys/:items/container/:items/banner/:items/navigation",
+            ":items/parsys/:items/container/:items/banner",
+            // la-theorie-du-y.model.json
+            ":items/parsys/:items/container/:items/episodes-list/:items/navigation",
+            // de-shaq.model.json (series?)
+            ":items/parsys/:items/container/:items/episodes-list",
+            // salah.model.json, let's hope this is a rare exception
+            ":items/parsys/:items/container/:items/episodes_list_*/:items/navigation"
+    };
+
+    // fallback when there's no season list: seasons[].title.raw (= key) + .value
+    private static final String PROGRAM_SEASONS_PATH = "details/data/program/seasons";
+
+    // container with title "Trailer" if there's a trailer
+    private static final String TRAILER_PATH = ":items/parsys/:items/container/:items/navigation/:items/container";
+
+    private static final JSONPathExtractor seasonExtractor = createSeasonExtractor();
 
     public ProgramService() {
         super(TAG);
     }
 
+    private static JSONPathExtractor createSeasonExtractor() {
+        JSONPathExtractor extractor = new JSONPathExtractor();
+        for(String path : SEASON_PATHS) {
+            extractor.add(path, path);
+        }
+        return extractor
+                .add(PROGRAM_SEASONS_PATH, PROGRAM_SEASONS_PATH)
+                .add(TRAILER_PATH, TRAILER_PATH);
+    }
+
 
     // Try to make the best out of the season parsing, all in all it's not a real problem
     // if this fails, in this case it will return an empty map and we search for all episode
     // regardless of the season. Episodes might be mixed up because of this but seems accurate for now
-    private LinkedHashMap<String,String> parseSeason(JSONObject inputData) {
+    private LinkedHashMap<String,String> parseSeason(JSONPathExtractor.Result paths) {
 
         LinkedHashMap<String,String> result = new LinkedHashMap<>();
 
-        try {
-
-            JSONObject parseObject = null;
-            JSONArray itemsOrder = null;
-            JSONObject items = null;
-
-            // try path1
-            // [":items"].parsys[":items"].container[":items"].banner[":items"].navigation[":items"] && .navigation[":itemsOrder"]
-            try {
-                parseObject = inputData
-                        .getJSONObject(":items")
-                        .getJSONObject("parsys")
-                        .getJSONObject(":items")
-                        .getJSONObject("container")
-                        .getJSONObject(":items")
-                        .getJSONObject("banner")
-                        .getJSONObject(":items")
-                        .getJSONObject("navigation");
-
-                 itemsOrder = parseObject.getJSONArray(":itemsOrder");
-                 items = parseObject.getJSONObject(":items");
-
-            } catch(JSONException e) {
-                e.printStackTrace();
+        JSONArray itemsOrder = null;
+        JSONObject items = null;
+
+        // first season list found in the model.json
+        for(String path : SEASON_PATHS) {
+            JSONObject seasonList = paths.optJSONObject(path);
+            if(seasonList != null && seasonList.optJSONArray(":itemsOrder") != null
+                    && seasonList.optJSONObject(":items") != null) {
+                itemsOrder = seasonList.optJSONArray(":itemsOrder");
+                items = seasonList.optJSONObject(":items");
+                break;
             }
+        }
 
-            // try path2
-            // [":items"].parsys[":items"].container[":items"].banner[":items"] && banner[":itemsOrder"]
-            if(itemsOrder == null || items == null) {
-                try {
-                    parseObject = inputData
-                            .getJSONObject(":items")
-                            .getJSONObject("parsys")
-                            .getJSONObject(":items")
-                            .getJSONObject("container")
-                            .getJSONObject(":items")
-                            .getJSONObject("banner");
-
-                    itemsOrder = parseObject.getJSONArray(":itemsOrder");
-                    items = parseObject.getJSONObject(":items");
-
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
+        JSONArray programSeasons = paths.optJSONArray(PROGRAM_SEASONS_PATH);
 
-            // try path3 - la-theorie-du-y.model.json
-            // [":items"].parsys[":items"].container[":items"]["episodes-list"][":items"].navigation[":items"] && .navigation[":itemsOrder"]
-            if(itemsOrder == null || items == null) {
-                try {
-                    parseObject = inputData
-                            .getJSONObject(":items")
-                            .getJSONObject("parsys")
-                            .getJSONObject(":items")
-                            .getJSONObject("container")
-                            .getJSONObject(":items")
-                            .getJSONObject("episodes-list")
-                            .getJSONObject(":items")
-                            .getJSONObject("navigation");
-
-                    itemsOrder = parseObject.getJSONArray(":itemsOrder");
-                    items = parseObject.getJSONObject(":items");
-
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
+        if(itemsOrder != null) {
 
-            // try path4 - de-shaq.model.json.json (series?)
-            // path4   : [":items"].parsys[":items"].container[":items"]["episodes-list"][":items"] && ["episodes-list"][":itemsOrder"]
-            if(itemsOrder == null || items == null) {
-                try {
-                    parseObject = inputData
-                            .getJSONObject(":items")
-                            .getJSONObject("parsys")
-                            .getJSONObject(":items")
-                            .getJSONObject("container")
-                            .getJSONObject(":items")
-                            .getJSONObject("episodes-list");
-
-                    itemsOrder = parseObject.getJSONArray(":itemsOrder");
-                    items = parseObject.getJSONObject(":items");
-
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
+            Log.d(TAG, "Seasons discovered: " + itemsOrder.toString());
 
-            // try path5 - salah.model.json, let's hope this is a rare exception
-            // path5   : [":items"].parsys[":items"].container[":items"].episodes_list_268730743[":items"].navigation[":items"] && [":itemsOrder"]
-            if(itemsOrder == null || items == null) {
-                try {
-                    parseObject = inputData
-                            .getJSONObject(":items")
-                            .getJSONObject("parsys")
-                            .getJSONObject(":items")
-                            .getJSONObject("container")
-                            .getJSONObject(":items");
-
-                    JSONObject parseObject2 = null;
-
-                    Iterator<String> keys = parseObject.keys();
-                    while(keys.hasNext()) {
-                        String key = keys.next();
-                        if(key.startsWith("episodes_list_")) {
-                            parseObject2 = parseObject.getJSONObject(key)
-                                    .getJSONObject(":items")
-                                    .getJSONObject("navigation");
-                        }
-                    }
-
-                    itemsOrder = parseObject2.getJSONArray(":itemsOrder");
-                    items = parseObject2.getJSONObject(":items");
-
-                } catch (JSONException e) {
-                    e.printStackTrace();
+            // Get season names
+            Map<String, String> seasonNames = new HashMap<>();
+            Iterator<String> keys = items.keys();
+            while(keys.hasNext()) {
+                String key = keys.next();
+                JSONObject item = items.optJSONObject(key);
+                if (item != null && item.has("title")) {
+                    seasonNames.put(key, item.opt("title").toString());
                 }
             }
 
-            // try path6
-            // details.data.program.seasons[0].title.raw (= key) + .value
-            if(itemsOrder == null || items == null) {
-                try {
-
-                    items = new JSONObject();
-                    itemsOrder = new JSONArray();
-
-                    parseObject = inputData
-                            .getJSONObject("details")
-                            .getJSONObject("data")
-                            .getJSONObject("program");
-
-                    JSONArray seasons = parseObject.getJSONArray("seasons");
-
-                    for (int i = 0; i < seasons.length(); i++) {
-                        if (seasons.get(i) instanceof JSONObject) {
-                            JSONObject entry = new JSONObject();
-                            JSONObject title = seasons.getJSONObject(i).getJSONObject("title");
-                            entry.put("title", title.getString("value"));
-                            items.put(title.getString("raw"), entry);
-                            itemsOrder.put(title.getString("raw"));
-                        }
-                    }
-
-                    if (items.length() == 0 || itemsOrder.length() == 0) {
-                        items = null;
-                        itemsOrder = null;
-                    }
-
-                } catch (JSONException e) {
-                    items = null;
-                    itemsOrder = null;
-                    e.printStackTrace();
-                }
+            // Return result in correct sort order
+            for (int i = 0; i < itemsOrder.length(); i++) {
+                String key = itemsOrder.opt(i).toString();
+                result.put(key, seasonNames.get(key));
             }
 
-            if(itemsOrder != null && items != null) {
-
-                Log.d(TAG, "Seasons discovered: " + itemsOrder.toString());
+        } else if(programSeasons != null) {
 
-                // Get season names
-                Map<String, String> seasonNames = new HashMap<>();
-                Iterator<String> keys = items.keys();
-                while(keys.hasNext()) {
-                    String key = keys.next();
-                    if (items.get(key) instanceof JSONObject) {
-                        String value = items.getJSONObject(key).get("title").toString();
-                        seasonNames.put(key, value);
-                    }
-                }
-
-                // Return result in correct sort order
-                for (int i = 0; i < items.length(); i++) {
-                    String key = itemsOrder.get(i).toString();
-                    result.put(key, seasonNames.get(key));
+            // details.data.program.seasons[].title.raw (= key) + .value
+            for (int i = 0; i < programSeasons.length(); i++) {
+                JSONObject season = programSeasons.optJSONObject(i);
+                JSONObject title = season != null ? season.optJSONObject("title") : null;
+                if (title != null && title.has("raw") && title.has("value")) {
+                    result.put(title.optString("raw"), title.optString("value"));
                 }
             }
 
-            // try trailer path to see if we should add a "Trailer season"
-            // [":items"].parsys[":items"].container[":items"].navigation[":items"].container.title
-            try {
-                parseObject = inputData
-                        .getJSONObject(":items")
-                        .getJSONObject("parsys")
-                        .getJSONObject(":items")
-                        .getJSONObject("container")
-                        .getJSONObject(":items")
-                        .getJSONObject("navigation")
-                        .getJSONObject(":items")
-                        .getJSONObject("container");
-
-                if(parseObject instanceof JSONObject) {
-                    if(parseObject.getString("title").equals("Trailer")) {
-                        Log.d(TAG, "Adding Trailer season");
-                        result.put("trailer", "Trailer");
-                    }
-                }
-
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+            Log.d(TAG, "Seasons discovered: " + result.keySet());
+        }
 
-            // if parseObject is still null here everything failed
-            if(parseObject == null) {
-                Log.d(TAG, "Cannot determine season or find trailer");
-                return null;
-            }
+        // see if we should add a "Trailer season"
+        JSONObject trailer = paths.optJSONObject(TRAILER_PATH);
+        if(trailer != null && trailer.optString("title").equals("Trailer")) {
+            Log.d(TAG, "Adding Trailer season");
+            result.put("trailer", "Trailer");
+        }
 
-        } catch(Exception e) {
-            e.printStackTrace();
+        // none of the paths is there
+        if(itemsOrder == null && programSeasons == null && trailer == null) {
+            Log.d(TAG, "Cannot determine season or find trailer");
+            return null;
         }
 
         return result;
@@ -320,6 +182,36 @@ public class ProgramService extends IntentService {
         }
     }
 
+    // The seasons Map goes back and forth with ProgramFragment as a Bundle of two ordered lists,
+    // Bundles don't keep the order of a LinkedHashMap when they are parceled
+    private static final String SEASON_KEYS = "SEASON_KEYS";
+    private static final String SEASON_VALUES = "SEASON_VALUES";
+
+    public static Bundle bundleSeasons(LinkedHashMap<String,String> seasons) {
+        Bundle bundle = new Bundle();
+        bundle.putStringArrayList(SEASON_KEYS, new ArrayList<>(seasons.keySet()));
+        bundle.putStringArrayList(SEASON_VALUES, new ArrayList<>(seasons.values()));
+        return bundle;
+    }
+
+    public static LinkedHashMap<String,String> unbundleSeasons(Bundle bundle) {
+        if(bundle == null) {
+            return null;
+        }
+
+        ArrayList<String> keys = bundle.getStringArrayList(SEASON_KEYS);
+        ArrayList<String> values = bundle.getStringArrayList(SEASON_VALUES);
+        if(keys == null || values == null || keys.size() != values.size()) {
+            return null;
+        }
+
+        LinkedHashMap<String,String> seasons = new LinkedHashMap<>();
+        for(int i = 0; i < keys.size(); i++) {
+            seasons.put(keys.get(i), values.get(i));
+        }
+        return seasons;
+    }
+
     @Override
     protected void onHandleIntent(Intent workIntent) {
 
@@ -329,12 +221,10 @@ public class ProgramService extends IntentService {
         try {
 
             // get passed Program object
-            String programJson = workIntent.getExtras().getString("PROGRAM_OBJECT");
-            program = new Gson().fromJson(programJson, Program.class);
+            program = workIntent.getParcelableExtra("PROGRAM_OBJECT");
 
             // get passed seasons Map
-            String seasonJson = workIntent.getExtras().getString("SEASON_LIST");
-            seasons = new Gson().fromJson(seasonJson, LinkedHashMap.class);
+            seasons = unbundleSeasons(workIntent.getBundleExtra("SEASON_LIST"));
 
             // get passed season index, this maps to the index inside the map as keys are defined as strings (2020, 2020-nj)
             int seasonIndex = workIntent.getExtras().getInt("SEASON_INDEX");
@@ -342,6 +232,9 @@ public class ProgramService extends IntentService {
             // get passed start index from where we should start loading videos (offset)
             int startIndex = workIntent.getExtras().getInt("START_INDEX");
 
+            // requests are cancelled by ProgramFragment when switching season or leaving the program
+            String requestTag = workIntent.getExtras().getString(HTTPClient.REQUEST_TAG);
+
             // Initiate videoList
             VideoList videoList = VideoList.getInstance();
             if(startIndex == 1) {
@@ -365,9 +258,14 @@ public class ProgramService extends IntentService {
             if(seasons == null) {
                 url = String.format(getString(R.string.service_program_seasons_url), program.getProgramName());
                 Log.d(TAG, "Getting season info at " + url);
-                returnObject = httpClient.getCachedRequest(getCacheDir(), url, 1440);
-                if (httpClient.getResponseCode() == 200) {
-                    seasons = parseSeason(returnObject);
+                // only the season paths of the model.json are decoded, while it's downloaded
+                HTTPResponse response = httpClient.getCachedRequestAsync(getCacheDir(), url, seasonExtractor, requestTag, null).await();
+                if (response.isCancelled()) {
+                    Log.d(TAG, "Loading of " + program.getProgramName() + " cancelled");
+                    return;
+                }
+                if (response.getCode() == 200 && response.getDecodedBody() != null) {
+                    seasons = parseSeason(response.getDecodedBody());
                 }
                 Log.d(TAG, "Set season to: " + seasons);
             }
@@ -396,19 +294,27 @@ public class ProgramService extends IntentService {
 
             Log.d(TAG, "Getting program details at: " + url);
 
-            // Get program details
-            returnObject = httpClient.getCachedRequest(getCacheDir(), url);
+            // Get program details, decoded straight into Videos
+            SearchResults.Decoder decoder = new SearchResults.Decoder(getString(R.string.model_image_server));
+            HTTPResponse response = httpClient.getCachedRequestAsync(getCacheDir(), url, decoder, requestTag, null).await();
+
+            if (response.isCancelled()) {
+                Log.d(TAG, "Loading of " + program.getProgramName() + " cancelled");
+                return;
+            }
 
-            if (httpClient.getResponseCode() != 200) {
-                throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+            if (response.getCode() != 200) {
+                throw new HttpException(response.getCode() + ": " + response.getMessage());
             }
 
-            JSONObject meta = returnObject.getJSONObject("meta");
-            JSONArray items = returnObject.getJSONArray("results");
+            SearchResults searchResults = response.getDecodedBody();
+            if (searchResults == null) {
+                throw new JSONException("No search results in response of " + url);
+            }
 
             // Update VideoList object with latest numbers of available / loaded
-            int videosAvailable = meta.getInt("total_results");
-            int videosLoaded = videoList.getVideosLoaded() + items.length();
+            int videosAvailable = searchResults.getTotalResults();
+            int videosLoaded = videoList.getVideosLoaded() + searchResults.getVideos().size();
 
             videoList.setVideosAvailable(videosAvailable);
             videoList.setVideosLoaded(videosLoaded);
@@ -416,10 +322,7 @@ public class ProgramService extends IntentService {
             Log.d(TAG, "Available = " + videosAvailable);
             Log.d(TAG, "Loaded = " + videosLoaded);
 
-            for (int i = 0; i < items.length(); i++) {
-                JSONObject program = items.getJSONObject(i);
-                String imageServer = getString(R.string.model_image_server);
-                Video video = parseVideoFromJSON(program, imageServer);
+            for (Video video : searchResults.getVideos()) {
 
                 // Copy progress from ResumePointsList
                 for(ResumePoint resumePoint : ResumePointList.getInstance().getResumePoints()) {
@@ -433,7 +336,7 @@ public class ProgramService extends IntentService {
                 Log.d(TAG, "Adding video : " + video.getTitle());
             }
 
-            resultData.putString("SEASON_LIST", (new Gson()).toJson(seasons));
+            resultData.putBundle("SEASON_LIST", bundleSeasons(seasons));
             receiver.send(Activity.RESULT_OK, resultData);
 
         } catch (Exception e) {
@@ -445,68 +348,4 @@ public class ProgramService extends IntentService {
         }
 
     }
-
-    public static Video parseVideoFromJSON(JSONObject inputObject, String imageServer) throws JSONException {
-
-        // fields get with getString are mandatory and will throw a JSONException if not set
-        // fields get with optString are optional and have a default value of ""
-        String title = inputObject.getString(TAG_TITLE);
-
-        // Check if title ends with a date, if so, remove it
-        if(title.matches("^.*[0-9]{8}$")) {
-            title = title.substring(0, title.length() - 8);
-        }
-
-        String subTitle = inputObject.optString(TAG_SUBTITLE);
-        String seasonName = inputObject.optString(TAG_SEASONNAME);
-        String seasonTitle = inputObject.optString(TAG_SEASONTITLE);
-        int episodeNumber = inputObject.optInt(TAG_EPISODENR);
-        int duration = inputObject.optInt(TAG_DURATION, 0) * 60;
-        String videoId  = inputObject.getString(TAG_VIDEOID);
-        String pubId  = inputObject.getString(TAG_PUBID);
-        JSONArray brands = inputObject.optJSONArray(TAG_BRANDS);
-        String programName = inputObject.optString(TAG_PROGRAMNAME);
-        String programTitle = inputObject.optString(TAG_PROGRAMTITLE);
-        String assetPath = inputObject.optString(TAG_ASSETPATH);
-        String url = inputObject.optString(TAG_URL);
-        String whatsonId = inputObject.optString(TAG_WHATSONID);
-        String programWhatsonId = inputObject.optString(TAG_PROGRAMWHATSONID);
-        String allowedRegion = inputObject.optString(TAG_ALLOWEDREGION);
-        String onTime = inputObject.optString(TAG_ONTIME);
-        String offTime = inputObject.optString(TAG_OFFTIME);
-
-        // we replace the image server with the one defined in urls.xml
-        // this prepends the (often) 'missing' 'https://' and allows us to query our own size ('orig' can go up to 18MB each(!))
-        String thumbnail = inputObject.optString(TAG_THUMBNAIL).replaceFirst("^(https:)?//images.vrt.be/orig/", "");
-        String streamType = StreamService.STREAMTYPE_ONDEMAND;
-
-        // we only use the 1st brand for now in the array
-        String brand = (String)brands.get(0);
-
-        Video video = new Video(
-                title,
-                subTitle,
-                seasonName,
-                seasonTitle,
-                episodeNumber,
-                duration,
-                thumbnail,
-                videoId,
-                pubId,
-                brand,
-                programName,
-                programTitle,
-                assetPath,
-                url,
-                whatsonId,
-                programWhatsonId,
-                allowedRegion,
-                onTime,
-                offTime,
-                imageServer,
-                streamType
-        );
-
-        return video;
-    }
 }
@@ -25,9 +25,7 @@ import android.os.ResultReceiver;
 import android.util.Log;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
-import be.lorang.nuplayer.BuildConfig;
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.ResumePoint;
 import be.lorang.nuplayer.model.ResumePointList;
@@ -36,12 +34,10 @@ import be.lorang.nuplayer.model.VideoContinueWatchingList;
 import be.lorang.nuplayer.model.VideoList;
 import be.lorang.nuplayer.model.VideoWatchLaterList;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.RequestPriority;
 import be.lorang.nuplayer.model.ProgramList;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -79,6 +75,8 @@ public class ResumePointsService extends IntentService {
     public final static String ACTION_UPDATE_WATCH_LATER = "updateWatchLater";
 
     private HTTPClient httpClient = new HTTPClient();
+    // video lookups mostly hit the cache, the misses can wait for the player (if any) to fill its buffer
+    private HTTPClient videoLookupClient = new HTTPClient(RequestPriority.PREFETCH);
     private Bundle resultData = new Bundle();
     private String vrtnu_site_profile_vt = "";
     private Video video;
@@ -102,16 +100,16 @@ public class ResumePointsService extends IntentService {
                     populateVideoLists();
                     break;
                 case ResumePointsService.ACTION_UPDATE_RESUME_POINT:
-                    video = new Gson().fromJson(workIntent.getExtras().getString("VIDEO_OBJECT"), Video.class);
+                    video = workIntent.getParcelableExtra("VIDEO_OBJECT");
                     int position = workIntent.getExtras().getInt("PLAYER_CURRENT_POSITION");
                     updateResumePoint(video, position);
                     break;
                 case ResumePointsService.ACTION_DELETE_RESUME_POINT:
-                    video = new Gson().fromJson(workIntent.getExtras().getString("VIDEO_OBJECT"), Video.class);
+                    video = workIntent.getParcelableExtra("VIDEO_OBJECT");
                     deleteResumePoint(video);
                     break;
                 case ResumePointsService.ACTION_UPDATE_WATCH_LATER:
-                    video = new Gson().fromJson(workIntent.getExtras().getString("VIDEO_OBJECT"), Video.class);
+                    video = workIntent.getParcelableExtra("VIDEO_OBJECT");
                     boolean watchLater = workIntent.getExtras().getBoolean("WATCH_LATER");
                     updateWatchLater(video, watchLater);
                     break;
@@ -144,15 +142,19 @@ public class ResumePointsService extends IntentService {
             headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
         }
 
-        JSONObject returnObject = httpClient.getRequest(getString(R.string.service_resumepoints_url), headers);
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.getRequest(getString(R.string.service_resumepoints_url), headers);
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
+        JSONObject returnObject = response.getBody();
+
         // only track resume points of last year
         Instant lastMonth = ZonedDateTime.now().minusMonths(1).toInstant();
         Instant lastYear = ZonedDateTime.now().minusYears(1).toInstant();
 
+        SearchResults.Decoder videoDecoder = new SearchResults.Decoder(getString(R.string.model_image_server));
+
         for (int i = 0; i < returnObject.names().length(); i++) {
             String assetPath = returnObject.names().getString(i);
             JSONObject resumePointObject = returnObject.getJSONObject(assetPath);
@@ -224,25 +226,19 @@ public class ResumePointsService extends IntentService {
             // Create Video object of result
             String queryURL = String.format(getString(R.string.service_resumepoints_video_url), url);
             Log.d(TAG, "Getting video info at: " + queryURL);
-            HTTPClient videoHTTPClient = new HTTPClient();
-            // Cache single video object (size=1) for 30 days, worst case some title or thumbnail is off
-            JSONObject videoReturnObject = videoHTTPClient.getCachedRequest(getCacheDir(), queryURL, 43200);
-            if(videoHTTPClient.getResponseCode() != 200) {
+            // Single video objects (size=1) are cached for 30 days, worst case some title or thumbnail is off
+            HTTPResponse videoResponse = videoLookupClient.getCachedRequest(getCacheDir(), queryURL, videoDecoder);
+            if(videoResponse.getCode() != 200) {
                 continue;
             }
 
-            Log.d(TAG, "Video result = " + videoReturnObject.toString());
-
-            JSONObject meta = videoReturnObject.getJSONObject("meta");
-            if(meta.getInt("total_results") != 1) {
+            SearchResults searchResults = videoResponse.getDecodedBody();
+            if(searchResults == null || searchResults.getTotalResults() != 1 || searchResults.getVideos().isEmpty()) {
                 continue;
             }
 
-            // Parse (first) result to Video object
-            JSONArray items = videoReturnObject.getJSONArray("results");
-            JSONObject program = items.getJSONObject(0);
-            String imageServer = getString(R.string.model_image_server);
-            Video video = ProgramService.parseVideoFromJSON(program, imageServer);
+            // (first) result is a new Video object, ours to modify
+            Video video = searchResults.getVideos().get(0);
             video.setProgressPct(progress.intValue());
             video.setCurrentPosition(position.intValue());
 
@@ -327,9 +323,9 @@ public class ResumePointsService extends IntentService {
             headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
         }
 
-        httpClient.postRequest(url, "application/json", postData, headers);
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.postRequest(url, "application/json", postData, headers);
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
         Log.d(TAG, "Resume point updated successfully");
@@ -357,16 +353,12 @@ public class ResumePointsService extends IntentService {
 
         Log.d(TAG, "Deleting resume point at = " + assetPath);
 
-        OkHttpClient httpClient = new OkHttpClient().newBuilder().build();
-        Request request = new Request.Builder()
-                .url(getString(R.string.service_resumepoints_url) + "/" + assetPath)
-                .addHeader("User-Agent", "NUPlayer/" + BuildConfig.VERSION_NAME)
-                .addHeader("Authorization", "Bearer " + vrtnu_site_profile_vt)
-                .delete()
-                .build();
+        Map<String, String> headers = new HashMap<>();
+        headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException(response.code() + ": " + response.message());
+        HTTPResponse response = httpClient.deleteRequest(getString(R.string.service_resumepoints_url) + "/" + assetPath, headers);
+        if(!response.isSuccessful()) {
+            throw new IOException(response.getCode() + ": " + response.getMessage());
         }
 
         Log.d(TAG, "Resume point deleted successfully");
@@ -416,9 +408,9 @@ public class ResumePointsService extends IntentService {
             headers.put("authorization", "Bearer " + vrtnu_site_profile_vt);
         }
 
-        httpClient.postRequest(url, "application/json", postData, headers);
-        if(httpClient.getResponseCode() != 200) {
-            throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+        HTTPResponse response = httpClient.postRequest(url, "application/json", postData, headers);
+        if(response.getCode() != 200) {
+            throw new HttpException(response.getCode() + ": " + response.getMessage());
         }
 
         Log.d(TAG, "Watch later updated successfully");
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.services;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import be.lorang.nuplayer.model.Video;
+import be.lorang.nuplayer.utils.ResponseDecoder;
+import be.lorang.nuplayer.utils.Utils;
+
+/*
+ * One page of a VRT.NU search7 query: meta.total_results and the Videos of results[]
+ *
+ * Decoder reads the response stream straight into Videos, the results[] are never built as
+ * org.json trees. Pass it to HTTPClient.getCachedRequest(cacheDir, url, decoder) and take the
+ * page from HTTPResponse.getDecodedBody().
+ */
+public class SearchResults {
+
+    private final int totalResults;
+    private final List<Video> videos;
+
+    private SearchResults(int totalResults, List<Video> videos) {
+        this.totalResults = totalResults;
+        this.videos = Collections.unmodifiableList(videos);
+    }
+
+    public int getTotalResults() {
+        return totalResults;
+    }
+
+    public List<Video> getVideos() {
+        return videos;
+    }
+
+    public static class Decoder implements ResponseDecoder<SearchResults> {
+
+        private final String imageServer;
+
+        public Decoder(String imageServer) {
+            this.imageServer = imageServer;
+        }
+
+        @Override
+        public SearchResults decode(InputStream inputStream) throws IOException {
+
+            JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            reader.setLenient(true);
+
+            if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+
+            int totalResults = -1;
+            List<Video> videos = null;
+
+            try {
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    String name = reader.nextName();
+                    if(name.equals("meta") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while(reader.hasNext()) {
+                            if(reader.nextName().equals("total_results") && reader.peek() == JsonToken.NUMBER) {
+                                totalResults = reader.nextInt();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else if(name.equals("results") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        videos = new ArrayList<>();
+                        reader.beginArray();
+                        while(reader.hasNext()) {
+                            videos.add(readVideo(reader, imageServer));
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw new MalformedJsonException(e.getMessage());
+            }
+
+            // not a search7 response
+            if(totalResults < 0 || videos == null) {
+                return null;
+            }
+
+            return new SearchResults(totalResults, videos);
+        }
+    }
+
+    /*
+     * Reads one item of search7 results[] as a Video
+     *
+     * title, videoId, publicationId and brands are mandatory, other fields default to "" or 0.
+     */
+    static Video readVideo(JsonReader in, String imageServer) throws IOException {
+
+        String path = in.getPath();
+        String title = null;
+        String subTitle = "";
+        String seasonName = "";
+        String seasonTitle = "";
+        int episodeNumber = 0;
+        int duration = 0;
+        String thumbnail = "";
+        String videoId = null;
+        String pubId = null;
+        String brand = null;
+        String programName = "";
+        String programTitle = "";
+        String assetPath = "";
+        String url = "";
+        String whatsonId = "";
+        String programWhatsonId = "";
+        String allowedRegion = "";
+        String onTime = "";
+        String offTime = "";
+
+        in.beginObject();
+        while(in.hasNext()) {
+            switch(in.nextName()) {
+                case "title":
+                    title = readString(in, null);
+                    break;
+                case "subtitle":
+                    subTitle = readString(in, subTitle);
+                    break;
+                case "seasonName":
+                    seasonName = readString(in, seasonName);
+                    break;
+                case "seasonTitle":
+                    seasonTitle = readString(in, seasonTitle);
+                    break;
+                case "episodeNumber":
+                    episodeNumber = readInt(in);
+                    break;
+                case "duration":
+                    duration = readInt(in) * 60;
+                    break;
+                case "videoThumbnailUrl":
+                    thumbnail = readString(in, thumbnail);
+                    break;
+                case "videoId":
+                    videoId = readString(in, null);
+                    break;
+                case "publicationId":
+                    pubId = readString(in, null);
+                    break;
+                case "brands":
+                    brand = readFirstString(in);
+                    break;
+                case "programName":
+                    programName = readString(in, programName);
+                    break;
+                case "programTitle":
+                    programTitle = readString(in, programTitle);
+                    break;
+                case "assetPath":
+                    assetPath = readString(in, assetPath);
+                    break;
+                case "url":
+                    url = readString(in, url);
+                    break;
+                case "whatsonId":
+                    whatsonId = readString(in, whatsonId);
+                    break;
+                case "programWhatsonId":
+                    programWhatsonId = readString(in, programWhatsonId);
+                    break;
+                case "allowedRegion":
+                    allowedRegion = readString(in, allowedRegion);
+                    break;
+                case "onTime":
+                    onTime = readString(in, onTime);
+                    break;
+                case "offTime":
+                    offTime = readString(in, offTime);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if(title == null || videoId == null || pubId == null || brand == null) {
+            throw new MalformedJsonException("Video without title, videoId, publicationId or brand at " + path);
+        }
+
+        // Check if title ends with a date, if so, remove it
+        if(endsWithDate(title)) {
+            title = title.substring(0, title.length() - 8);
+        }
+
+        // we replace the image server with the one defined in urls.xml
+        // this prepends the (often) 'missing' 'https://' and allows us to query our own size ('orig' can go up to 18MB each(!))
+        thumbnail = Utils.stripImageServer(thumbnail);
+
+        return new Video(
+                title,
+                subTitle,
+                seasonName,
+                seasonTitle,
+                episodeNumber,
+                duration,
+                thumbnail,
+                videoId,
+                pubId,
+                brand,
+                programName,
+                programTitle,
+                assetPath,
+                url,
+                whatsonId,
+                programWhatsonId,
+                allowedRegion,
+                onTime,
+                offTime,
+                imageServer,
+                StreamService.STREAMTYPE_ONDEMAND
+        );
+    }
+
+    // Strings, numbers and booleans as their text, fallback for null, objects and arrays
+    private static String readString(JsonReader in, String fallback) throws IOException {
+        switch(in.peek()) {
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                in.skipValue();
+                return fallback;
+        }
+    }
+
+    // Numbers (and numeric strings) truncated to an int, 0 for anything else
+    private static int readInt(JsonReader in) throws IOException {
+        switch(in.peek()) {
+            case STRING:
+            case NUMBER:
+                String value = in.nextString();
+                try {
+                    return (int) Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            default:
+                in.skipValue();
+                return 0;
+        }
+    }
+
+    // We only use the 1st brand for now in the array
+    private static String readFirstString(JsonReader in) throws IOException {
+        if(in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+
+        String first = null;
+        in.beginArray();
+        while(in.hasNext()) {
+            if(first == null) {
+                first = readString(in, null);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+        return first;
+    }
+
+    // Title ends with 8 digits (yyyyMMdd), checked by hand as this runs for every video of a page
+    private static boolean endsWithDate(String title) {
+        if(title.length() < 8) {
+            return false;
+        }
+        for(int i = title.length() - 8; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if(c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -28,12 +28,16 @@ import com.bumptech.glide.load.HttpException;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.JSONPathExtractor;
+import be.lorang.nuplayer.utils.RequestPriority;
 import be.lorang.nuplayer.model.ProgramList;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.Iterator;
+import java.util.regex.Pattern;
+
 
 /*
  * This class will download the list of series from the VRT.NU website and add them to the
@@ -49,6 +53,16 @@ public class SeriesService extends IntentService {
     private static final String TAG = "SeriesService";
     public final static String BUNDLED_LISTENER = "listener";
 
+    // [":items"].*.title and [":items"].*[":itemsOrder"] of the series page
+    private static final String SERIES_TITLE = "Bekijk deze volledige fictiereeksen";
+    // item keys are the program name with a "1_" .. "99_" prefix
+    private static final Pattern ITEM_PREFIX = Pattern.compile("[0-9]([0-9])?_");
+    private static final String PATH_TITLE = "title";
+    private static final String PATH_ITEMS_ORDER = "itemsOrder";
+    private static final JSONPathExtractor seriesExtractor = new JSONPathExtractor()
+            .add(PATH_TITLE, ":items/*/title")
+            .add(PATH_ITEMS_ORDER, ":items/*/:itemsOrder");
+
     private HTTPClient httpClient = new HTTPClient();
     private Bundle resultData = new Bundle();
 
@@ -61,6 +75,8 @@ public class SeriesService extends IntentService {
 
         ResultReceiver receiver = workIntent.getParcelableExtra(CatalogService.BUNDLED_LISTENER);
         ProgramList programList = ProgramList.getInstance();
+        httpClient = new HTTPClient(RequestPriority.fromName(
+                workIntent.getStringExtra(HTTPClient.REQUEST_PRIORITY), RequestPriority.INTERACTIVE));
 
         // Return immediately if series list already set
         if(programList.getSeriesCount() > 0){
@@ -71,23 +87,25 @@ public class SeriesService extends IntentService {
         try {
 
             // Get series from "primary" URL
-            JSONObject returnObject = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_catalog_series_url), 1440);
-            if(httpClient.getResponseCode() == 200) {
-
-                JSONObject items = returnObject.getJSONObject(":items");
-
-                Iterator<String> keys = items.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    if (items.get(key) instanceof JSONObject) {
-                        JSONObject value = items.getJSONObject(key);
-                        if (value.has("title") && value.getString("title").equals("Bekijk deze volledige fictiereeksen")) {
-                            JSONArray itemsOrder = value.getJSONArray(":itemsOrder");
-                            for (int i = 0; i < itemsOrder.length(); i++) {
-                                String programName = itemsOrder.get(i).toString().replaceFirst("[0-9]([0-9])?_", "");
-                                Log.d(TAG, "Setting isSerie = true for: " + programName);
-                                programList.setIsSerie(programName);
-                            }
+            // a stale copy is returned immediately and refreshed in the background, series are
+            // flags on the catalog so newer data marks the whole catalog for a rebuild
+            HTTPResponse response = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_catalog_series_url),
+                    seriesExtractor, (url, body) -> programList.setOutdated(true));
+            JSONPathExtractor.Result paths = response.getDecodedBody();
+            if(response.getCode() == 200 && paths != null) {
+
+                // the item with the series title lists them in its itemsOrder
+                for (String titlePath : paths.getPaths(PATH_TITLE)) {
+                    if (!SERIES_TITLE.equals(paths.optAt(titlePath))) {
+                        continue;
+                    }
+
+                    Object itemsOrder = paths.optAt(JSONPathExtractor.getParentPath(titlePath) + "/:itemsOrder");
+                    if (itemsOrder instanceof JSONArray) {
+                        for (int i = 0; i < ((JSONArray) itemsOrder).length(); i++) {
+                            String programName = ITEM_PREFIX.matcher(((JSONArray) itemsOrder).get(i).toString()).replaceFirst("");
+                            Log.d(TAG, "Setting isSerie = true for: " + programName);
+                            programList.setIsSerie(programName);
                         }
                     }
                 }
@@ -95,12 +113,13 @@ public class SeriesService extends IntentService {
 
             // Get series from backup URL if series still empty
             if(programList.getSeriesCount() == 0) {
-                returnObject = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_catalog_series_backup_url), 1440);
-                if (httpClient.getResponseCode() != 200) {
-                    throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+                response = httpClient.getCachedRequest(getCacheDir(), getString(R.string.service_catalog_series_backup_url),
+                        (url, body) -> programList.setOutdated(true));
+                if (response.getCode() != 200) {
+                    throw new HttpException(response.getCode() + ": " + response.getMessage());
                 }
 
-                JSONArray items = returnObject.getJSONArray("data");
+                JSONArray items = response.getBody().getJSONArray("data");
                 for (int i = 0; i < items.length(); i++) {
                     JSONObject programJSON = items.getJSONObject(i);
                     Log.d(TAG, "Setting isSerie = true for: " + programJSON.get("programName"));
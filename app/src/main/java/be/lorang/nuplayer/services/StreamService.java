@@ -28,10 +28,11 @@ import android.util.Log;
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.ui.MainActivity;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.RequestPriority;
 import be.lorang.nuplayer.model.Video;
 
 import com.bumptech.glide.load.HttpException;
-import com.google.gson.Gson;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -51,7 +52,7 @@ public class StreamService extends IntentService {
     public static final String STREAMTYPE_ONDEMAND = "ondemand";
     public static final String STREAMTYPE_LIVETV = "livetv";
 
-    private HTTPClient httpClient = new HTTPClient();
+    private HTTPClient httpClient = new HTTPClient(RequestPriority.PLAYBACK);
     private Bundle resultData = new Bundle();
 
     private String vrtPlayerToken;
@@ -71,8 +72,7 @@ public class StreamService extends IntentService {
         try {
 
             // get passed Video object
-            String videoJson = workIntent.getExtras().getString("VIDEO_OBJECT");
-            Video video = new Gson().fromJson(videoJson, Video.class);
+            Video video = workIntent.getParcelableExtra("VIDEO_OBJECT");
             String streamType = video.getStreamType();
 
             // get vrtPlayerToken
@@ -96,15 +96,16 @@ public class StreamService extends IntentService {
 
             }
             Log.d(TAG, "Requesting video info at " + url);
-            JSONObject returnObject = httpClient.getRequest(url);
+            HTTPResponse response = httpClient.getRequest(url);
+            JSONObject returnObject = response.getBody();
 
-            if (httpClient.getResponseCode() != 200) {
+            if (response.getCode() != 200) {
 
                 String message = "";
                 try {
                     message = returnObject.getString("message");
                 }catch (JSONException e) {
-                    message = httpClient.getResponseCode() + "; " + httpClient.getResponseMessage();
+                    message = response.getCode() + "; " + response.getMessage();
                     e.printStackTrace();
                 }
 
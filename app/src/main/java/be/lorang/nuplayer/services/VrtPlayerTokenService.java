@@ -29,6 +29,8 @@ import com.bumptech.glide.load.HttpException;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.HTTPResponse;
+import be.lorang.nuplayer.utils.RequestPriority;
 import be.lorang.nuplayer.ui.MainActivity;
 
 import org.json.JSONException;
@@ -60,7 +62,7 @@ public class VrtPlayerTokenService extends IntentService {
     public final static String VRTPLAYERTOKEN_ANONYMOUS_EXPIRY = "vrtPlayerTokenAnonymousExpiry";
     public final static String VRTPLAYERTOKEN_AUTHENTICATED_EXPIRY = "vrtPlayerTokenAuthenticatedExpiry";
 
-    private HTTPClient httpClient = new HTTPClient();
+    private HTTPClient httpClient = new HTTPClient(RequestPriority.PLAYBACK);
     private Bundle resultData = new Bundle();
 
     private SharedPreferences prefs;
@@ -99,14 +101,16 @@ public class VrtPlayerTokenService extends IntentService {
                 postData.put("identityToken", vrtnu_site_profile_vt);
             }
 
-            JSONObject returnData = httpClient.postRequest(
+            HTTPResponse response = httpClient.postRequest(
                     getString(R.string.service_playertoken_player_token_server),
                     "application/json", postData);
 
-            if (httpClient.getResponseCode() != 200) {
-                throw new HttpException(httpClient.getResponseCode() + ": " + httpClient.getResponseMessage());
+            if (response.getCode() != 200) {
+                throw new HttpException(response.getCode() + ": " + response.getMessage());
             }
 
+            JSONObject returnData = response.getBody();
+
             Log.d(TAG, "Obtained vrtPlayerToken. Data: " + returnData.toString());
 
             // store received token as SharedPreference
@@ -40,10 +40,11 @@ import be.lorang.nuplayer.services.CatalogService;
 import be.lorang.nuplayer.model.Program;
 import be.lorang.nuplayer.model.ProgramList;
 import be.lorang.nuplayer.presenter.CatalogPresenter;
-import com.google.gson.Gson;
+import be.lorang.nuplayer.utils.HTTPClient;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 public class CatalogFragment extends GridFragment {
     private final static String TAG = "CatalogFragment";
@@ -52,6 +53,9 @@ public class CatalogFragment extends GridFragment {
     private List<String> selectedBrands = new ArrayList<>();
     private ArrayObjectAdapter mAdapter;
 
+    // tag of our CatalogService requests, cancelled when this fragment is destroyed
+    private final String requestTag = UUID.randomUUID().toString();
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -59,6 +63,12 @@ public class CatalogFragment extends GridFragment {
         loadData();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        HTTPClient.cancelAll(requestTag);
+    }
+
     private void setupAdapter() {
 
         CustomVerticalGridPresenter presenter = new CustomVerticalGridPresenter(ZOOM_FACTOR, false);
@@ -81,7 +91,7 @@ public class CatalogFragment extends GridFragment {
                             Program program = (Program) item;
 
                             Intent programIntent = new Intent(getActivity().getBaseContext(), ProgramActivity.class);
-                            programIntent.putExtra("PROGRAM_OBJECT", (new Gson()).toJson(program));
+                            programIntent.putExtra("PROGRAM_OBJECT", program);
                             Bundle bundle = ActivityOptionsCompat.makeSceneTransitionAnimation(getActivity()).toBundle();
                             startActivity(programIntent, bundle);
                         }
@@ -98,6 +108,7 @@ public class CatalogFragment extends GridFragment {
         if(getActivity() == null) { return ; }
 
         Intent serviceIntent = new Intent(getActivity(), CatalogService.class);
+        serviceIntent.putExtra(HTTPClient.REQUEST_TAG, requestTag);
         serviceIntent.putExtra(CatalogService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -55,6 +55,8 @@ import be.lorang.nuplayer.services.CatalogService;
 import be.lorang.nuplayer.services.EPGService;
 import be.lorang.nuplayer.services.FavoriteService;
 import be.lorang.nuplayer.services.ResumePointsService;
+import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.RequestPriority;
 
 import static android.content.Context.MODE_PRIVATE;
 
@@ -235,8 +237,10 @@ public class HomeFragment extends RowsSupportFragment {
         if(getActivity() == null) { return ; }
 
         // start an Intent to fetch EPG data
+        // only fills in the now playing info of the Live TV row, it yields to what's opened next
         Intent epgIntent = new Intent(getActivity(), EPGService.class);
         epgIntent.putExtra("ACTION", EPGService.ACTION_UPDATE_LIVE_TV_EPG);
+        epgIntent.putExtra(HTTPClient.REQUEST_PRIORITY, RequestPriority.PREFETCH.name());
         epgIntent.putExtra(EPGService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -269,7 +273,9 @@ public class HomeFragment extends RowsSupportFragment {
         if(getActivity() == null) { return ; }
 
         // start an Intent to download the Catalog
+        // the catalog itself is not shown on the home screen
         Intent catalogIntent = new Intent(getActivity(), CatalogService.class);
+        catalogIntent.putExtra(HTTPClient.REQUEST_PRIORITY, RequestPriority.PREFETCH.name());
         catalogIntent.putExtra(CatalogService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
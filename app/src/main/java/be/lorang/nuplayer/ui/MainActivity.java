@@ -32,18 +32,22 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.leanback.widget.SearchEditText;
 
+import java.io.File;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.services.AuthService;
+import be.lorang.nuplayer.utils.ConnectionPrewarmer;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.NetworkMonitor;
 
 public class MainActivity extends FragmentActivity {
 
@@ -77,8 +81,22 @@ public class MainActivity extends FragmentActivity {
         // setup application wide CookieManager
         CookieHandler.setDefault(new CookieManager());
 
-        // Remove expired caches
-        HTTPClient.clearExpiredCache(getCacheDir());
+        // Serve cached data while there's no network, re-sync when it comes back
+        NetworkMonitor.start(getApplicationContext());
+
+        // Remove expired caches, in background as it touches the disk
+        File cacheDir = getCacheDir();
+        new Thread(() -> HTTPClient.clearExpiredCache(cacheDir)).start();
+
+        // Meanwhile set up connections to the API hosts the first screens (and playback) need
+        ConnectionPrewarmer.start(Arrays.asList(
+                getString(R.string.service_catalog_catalog_url),
+                getString(R.string.service_epg_url),
+                getString(R.string.service_resumepoints_url),
+                getString(R.string.service_resumepoints_video_url),
+                getString(R.string.service_stream_stream_info_server),
+                getString(R.string.model_image_server)
+        ));
 
         // Setup clock ticker
         setupClockTicker();
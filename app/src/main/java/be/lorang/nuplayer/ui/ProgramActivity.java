@@ -22,7 +22,6 @@ import android.os.Bundle;
 import androidx.fragment.app.FragmentActivity;
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.Program;
-import com.google.gson.Gson;
 
 public class ProgramActivity extends FragmentActivity {
 
@@ -32,10 +31,7 @@ public class ProgramActivity extends FragmentActivity {
         super.onCreate(savedInstanceState);
 
         // get passed Program object
-        String programJson = getIntent().getExtras().getString("PROGRAM_OBJECT");
-        if(programJson != null) {
-            program = new Gson().fromJson(programJson, Program.class);
-        }
+        program = getIntent().getParcelableExtra("PROGRAM_OBJECT");
 
         setContentView(R.layout.fragment_program);
     }
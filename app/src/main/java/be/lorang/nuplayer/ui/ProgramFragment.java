@@ -64,8 +64,7 @@ import be.lorang.nuplayer.model.VideoList;
 import be.lorang.nuplayer.presenter.CustomVerticalGridPresenter;
 import be.lorang.nuplayer.presenter.WideVideoPresenter;
 import be.lorang.nuplayer.services.ResumePointsService;
-
-import com.google.gson.Gson;
+import be.lorang.nuplayer.utils.HTTPClient;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -74,6 +73,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class ProgramFragment extends VerticalGridSupportFragment implements OnItemViewSelectedListener {
 
@@ -86,6 +86,10 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
     private LinkedHashMap<String,String> seasons;
     private int selectedSeasonIndex = 0;
 
+    // tag of the requests done by ProgramService for us, renewed on each season switch so
+    // the load of the previous season can be cancelled
+    private String requestTag = UUID.randomUUID().toString();
+
     private ArrayObjectAdapter mAdapter;
     private BackgroundManager mBackgroundManager;
 
@@ -208,9 +212,10 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
 
         // start an Intent to download all videos for a specific program
         Intent serviceIntent = new Intent(getActivity(), ProgramService.class);
-        serviceIntent.putExtra("PROGRAM_OBJECT", (new Gson()).toJson(program));
+        serviceIntent.putExtra("PROGRAM_OBJECT", program);
         serviceIntent.putExtra("START_INDEX", startIndex);
         serviceIntent.putExtra("SEASON_INDEX", selectedSeasonIndex);
+        serviceIntent.putExtra(HTTPClient.REQUEST_TAG, requestTag);
 
         //
         // Between this ProgramFragment and ProgramService we pass seasons Map back and forth
@@ -219,7 +224,7 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
         //
 
         if(seasons != null) {
-            serviceIntent.putExtra("SEASON_LIST", (new Gson()).toJson(seasons));
+            serviceIntent.putExtra("SEASON_LIST", ProgramService.bundleSeasons(seasons));
         }
 
         serviceIntent.putExtra(ProgramService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
@@ -234,7 +239,7 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
 
                 if (resultCode == Activity.RESULT_OK) {
                     videoList = VideoList.getInstance();
-                    seasons = new Gson().fromJson(resultData.getString("SEASON_LIST"), LinkedHashMap.class);
+                    seasons = ProgramService.unbundleSeasons(resultData.getBundle("SEASON_LIST"));
 
                     setEpisodeCount(videoList.getVideosAvailable(), videoList.getVideosLoaded());
                     updateSeasons(seasons);
@@ -295,6 +300,9 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
                   mAdapter.clear();
                   // set season index
                   selectedSeasonIndex = position;
+                  // cancel loading of the previous season, if still busy
+                  HTTPClient.cancelAll(requestTag);
+                  requestTag = UUID.randomUUID().toString();
                   // load new data
                   loadData(1);
               }
@@ -370,7 +378,7 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
                         Intent favoritesIntent = new Intent(getContext(), FavoriteService.class);
                         favoritesIntent.putExtra("ACTION", FavoriteService.ACTION_UPDATE_FAVORITE);
                         favoritesIntent.putExtra("vrtnu_site_profile_vt", resultData.getString("vrtnu_site_profile_vt"));
-                        favoritesIntent.putExtra("PROGRAM_OBJECT", new Gson().toJson(program));
+                        favoritesIntent.putExtra("PROGRAM_OBJECT", program);
                         favoritesIntent.putExtra("IS_FAVORITE", newState);
 
                         // Our Program object doesn't hold the whatsonId as it's not returned by
@@ -452,6 +460,12 @@ public class ProgramFragment extends VerticalGridSupportFragment implements OnIt
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        HTTPClient.cancelAll(requestTag);
+    }
+
     @Override
     public void onResume() {
         super.onResume();
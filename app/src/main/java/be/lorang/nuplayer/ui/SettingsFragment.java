@@ -26,7 +26,9 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.ResultReceiver;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -41,6 +43,17 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
 import androidx.leanback.app.BrowseSupportFragment;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.ProgramList;
 import be.lorang.nuplayer.services.AccessTokenService;
@@ -51,6 +64,8 @@ import be.lorang.nuplayer.services.FavoriteService;
 import be.lorang.nuplayer.services.LogoutService;
 import be.lorang.nuplayer.services.SeriesService;
 import be.lorang.nuplayer.utils.HTTPClient;
+import be.lorang.nuplayer.utils.RequestMetrics;
+import be.lorang.nuplayer.utils.RequestPriority;
 
 import static android.content.Context.MODE_PRIVATE;
 
@@ -76,6 +91,8 @@ public class SettingsFragment extends Fragment {
 
     private TextView catalogField;
     private TextView JSONcacheField;
+    private TextView requestMetricsField;
+    private TextView circuitBreakerField;
     private TextView loggedinField;
 
     private Switch channelSwitch;
@@ -83,11 +100,15 @@ public class SettingsFragment extends Fragment {
     private Switch debugLoginSwitch;
     private Button catalogButton;
     private Button cacheButton;
+    private Button requestMetricsButton;
+    private Button circuitBreakerButton;
     private Button loginButton;
     private Button refreshTokenButton;
 
     private LinearLayout catalogContainer;
     private LinearLayout jsonCacheContainer;
+    private LinearLayout requestMetricsContainer;
+    private LinearLayout circuitBreakerContainer;
     private LinearLayout refreshTokenContainer;
     private LinearLayout loginDebugContainer;
 
@@ -97,12 +118,22 @@ public class SettingsFragment extends Fragment {
 
     private int LOGIN_ACTIVITY = 0x1234;
 
+    // the cache and metrics buttons read and write files, that's done here instead of on the main thread
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         prepareIntents();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        worker.shutdown();
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         return inflater.inflate(R.layout.fragment_settings, container, false);
@@ -114,6 +145,8 @@ public class SettingsFragment extends Fragment {
         // get form text fields
         catalogField = view.findViewById(R.id.valueSettingsCatalog);
         JSONcacheField = view.findViewById(R.id.valueSettingsJSONCache);
+        requestMetricsField = view.findViewById(R.id.valueSettingsRequestMetrics);
+        circuitBreakerField = view.findViewById(R.id.valueSettingsCircuitBreakers);
         loggedinField = view.findViewById(R.id.valueSettingsLoggedIn);
 
         // get form controls
@@ -122,6 +155,8 @@ public class SettingsFragment extends Fragment {
         catalogButton = view.findViewById(R.id.buttonSettingsCatalogRefresh);
         catalogProgressBar = view.findViewById(R.id.progressBarSettingsCatalogRefresh);
         cacheButton = view.findViewById(R.id.buttonSettingsJSONCache);
+        requestMetricsButton = view.findViewById(R.id.buttonSettingsRequestMetrics);
+        circuitBreakerButton = view.findViewById(R.id.buttonSettingsCircuitBreakers);
         loginButton = view.findViewById(R.id.buttonSettingsLoggedIn);
         refreshTokenButton = view.findViewById(R.id.buttonSettingsRefreshToken);
         debugLoginSwitch = view.findViewById(R.id.switchDebugLogin);
@@ -129,6 +164,8 @@ public class SettingsFragment extends Fragment {
         // get layouts only visible when developer mode enabled
         catalogContainer = view.findViewById(R.id.catalogContainer);
         jsonCacheContainer = view.findViewById(R.id.jsonCacheContainer);
+        requestMetricsContainer = view.findViewById(R.id.requestMetricsContainer);
+        circuitBreakerContainer = view.findViewById(R.id.circuitBreakerContainer);
         refreshTokenContainer = view.findViewById(R.id.refreshTokenContainer);
         loginDebugContainer = view.findViewById(R.id.loginDebugContainer);
 
@@ -138,6 +175,8 @@ public class SettingsFragment extends Fragment {
         setDebugLoginState();
         setCatalogText(catalogField);
         setJSONCacheText(JSONcacheField);
+        setRequestMetricsText(requestMetricsField);
+        setCircuitBreakerText(circuitBreakerField);
         setLoginText(loggedinField);
         setLoginButtonState();
 
@@ -195,29 +234,46 @@ public class SettingsFragment extends Fragment {
             // Clear catalog
             ProgramList.getInstance().clear();
 
-            // Clear cached copy of catalog URLs
-            HTTPClient.clearCatalogCache(getActivity().getCacheDir(),
-                    getString(R.string.service_catalog_catalog_url),
-                    getString(R.string.service_catalog_favorites_url)
-            );
-
-            // Update text fields with new status
-            setCatalogText(catalogField);
-            setJSONCacheText(JSONcacheField);
-
             catalogLoaded = false;
             seriesLoaded = false;
             favoritesLoaded = false;
             setCatalogButtonState();
 
-            getActivity().startService(catalogIntent);
+            // Clear cached copy of catalog URLs, download the catalog again once it's gone
+            File cacheDir = getActivity().getCacheDir();
+            String catalogUrl = getString(R.string.service_catalog_catalog_url);
+            String favoritesUrl = getString(R.string.service_catalog_favorites_url);
+            runInBackground(() -> {
+                HTTPClient.clearCatalogCache(cacheDir, catalogUrl, favoritesUrl);
+                return null;
+            }, result -> {
+                // Update text fields with new status
+                setCatalogText(catalogField);
+                setJSONCacheText(JSONcacheField);
+                getActivity().startService(catalogIntent);
+            });
 
         });
 
         // JSON cache listener
         cacheButton.setOnClickListener(v -> {
-            HTTPClient.clearCache(getActivity().getCacheDir());
-            setJSONCacheText(JSONcacheField);
+            File cacheDir = getActivity().getCacheDir();
+            runInBackground(() -> {
+                HTTPClient.clearCache(cacheDir);
+                return null;
+            }, result -> setJSONCacheText(JSONcacheField));
+        });
+
+        // Request metrics listener
+        requestMetricsButton.setOnClickListener(v -> {
+            exportRequestMetrics();
+            setRequestMetricsText(requestMetricsField);
+        });
+
+        // Circuit breaker listener
+        circuitBreakerButton.setOnClickListener(v -> {
+            HTTPClient.resetCircuitBreakers();
+            setCircuitBreakerText(circuitBreakerField);
         });
 
         // Login/logout listener
@@ -359,11 +415,15 @@ public class SettingsFragment extends Fragment {
         if(developerMode) {
             catalogContainer.setVisibility(View.VISIBLE);
             jsonCacheContainer.setVisibility(View.VISIBLE);
+            requestMetricsContainer.setVisibility(View.VISIBLE);
+            circuitBreakerContainer.setVisibility(View.VISIBLE);
             refreshTokenContainer.setVisibility(View.VISIBLE);
             loginDebugContainer.setVisibility(View.VISIBLE);
         } else {
             catalogContainer.setVisibility(View.GONE);
             jsonCacheContainer.setVisibility(View.GONE);
+            requestMetricsContainer.setVisibility(View.GONE);
+            circuitBreakerContainer.setVisibility(View.GONE);
             refreshTokenContainer.setVisibility(View.GONE);
             loginDebugContainer.setVisibility(View.GONE);
         }
@@ -382,9 +442,49 @@ public class SettingsFragment extends Fragment {
         }
     }
 
+    // The statistics read the cache index from disk, gather them off the main thread
     private void setJSONCacheText(TextView field) {
+        if(field == null || getActivity() == null) { return; }
+        File cacheDir = getActivity().getCacheDir();
+        runInBackground(() -> HTTPClient.getCacheStatistics(cacheDir), field::setText);
+    }
+
+    private void setRequestMetricsText(TextView field) {
+        if(field == null) { return; }
+        field.setText(RequestMetrics.getStatistics());
+    }
+
+    // Write request metrics as JSON to the external files dir, can be pulled with adb
+    private void exportRequestMetrics() {
+        if(getActivity() == null) { return; }
+        File file = new File(getActivity().getExternalFilesDir(null), "request-metrics-" + System.currentTimeMillis() + ".json");
+        runInBackground(() -> {
+            try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                outputStream.write(RequestMetrics.export().toString(2).getBytes(StandardCharsets.UTF_8));
+                return "Exported to " + file.getAbsolutePath();
+            } catch (IOException | JSONException e) {
+                Log.d(TAG, "Could not export request metrics: " + e.getMessage());
+                return "Could not export request metrics";
+            }
+        }, message -> Toast.makeText(getActivity(), message, Toast.LENGTH_LONG).show());
+    }
+
+    // Run work on the worker, its result is handed to done on the main thread if we're still added
+    private <T> void runInBackground(Supplier<T> work, Consumer<T> done) {
+        if(worker.isShutdown()) { return; }
+        worker.execute(() -> {
+            T result = work.get();
+            mainHandler.post(() -> {
+                if(isAdded()) {
+                    done.accept(result);
+                }
+            });
+        });
+    }
+
+    private void setCircuitBreakerText(TextView field) {
         if(field == null) { return; }
-        field.setText(HTTPClient.getCacheStatistics(getActivity().getCacheDir()));
+        field.setText(HTTPClient.getCircuitBreakerStatus());
     }
 
     private void setLoginText(TextView field) {
@@ -399,7 +499,9 @@ public class SettingsFragment extends Fragment {
     // Prepare intents to repopulate Catalog + Series + Favorites
     private void prepareIntents() {
 
+        // nothing on screen waits for these, let them yield to playback and browsing
         catalogIntent = new Intent(getActivity(), CatalogService.class);
+        catalogIntent.putExtra(HTTPClient.REQUEST_PRIORITY, RequestPriority.BACKGROUND.name());
         catalogIntent.putExtra(CatalogService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -423,6 +525,7 @@ public class SettingsFragment extends Fragment {
         });
 
         seriesIntent = new Intent(getActivity(), SeriesService.class);
+        seriesIntent.putExtra(HTTPClient.REQUEST_PRIORITY, RequestPriority.BACKGROUND.name());
         seriesIntent.putExtra(SeriesService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -48,7 +48,6 @@ import androidx.fragment.app.Fragment;
 import androidx.leanback.app.BrowseSupportFragment;
 
 import com.bumptech.glide.Glide;
-import com.google.gson.Gson;
 
 import java.time.Instant;
 import java.time.LocalTime;
@@ -57,6 +56,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import be.lorang.nuplayer.R;
 import be.lorang.nuplayer.model.ChannelList;
@@ -70,6 +70,7 @@ import be.lorang.nuplayer.player.VideoPlaybackActivity;
 import be.lorang.nuplayer.services.EPGService;
 import be.lorang.nuplayer.services.StreamService;
 import be.lorang.nuplayer.services.VrtPlayerTokenService;
+import be.lorang.nuplayer.utils.HTTPClient;
 import be.lorang.nuplayer.utils.Utils;
 
 import static android.content.Context.MODE_PRIVATE;
@@ -114,6 +115,9 @@ public class TVGuideFragment extends Fragment implements BrowseSupportFragment.M
 
     private ViewTreeObserver.OnScrollChangedListener scrollListener;
 
+    // tag of the EPGService request for the selected date, a new date cancels the previous one
+    private String requestTag;
+
     @Override
     public BrowseSupportFragment.MainFragmentAdapter getMainFragmentAdapter() {
         return mMainFragmentAdapter;
@@ -160,6 +164,12 @@ public class TVGuideFragment extends Fragment implements BrowseSupportFragment.M
         removeScrollViewListener();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        HTTPClient.cancelAll(requestTag);
+    }
+
     private void setupButtonListeners() {
         Button today = getView().findViewById(R.id.buttonToday);
         Button backToNow = getView().findViewById(R.id.buttonBackToNow);
@@ -284,10 +294,15 @@ public class TVGuideFragment extends Fragment implements BrowseSupportFragment.M
 
         startDate = selectedDate.with(LocalTime.of(START_HOUR,0));
 
+        // the user picked another date, we don't need the previous one anymore
+        HTTPClient.cancelAll(requestTag);
+        requestTag = UUID.randomUUID().toString();
+
         // start an Intent to fetch EPG data
         Intent epgIntent = new Intent(getActivity(), EPGService.class);
         epgIntent.putExtra("ACTION", EPGService.ACTION_GET_EPG);
         epgIntent.putExtra("EPG_DATE", selectedDate.toString());
+        epgIntent.putExtra(HTTPClient.REQUEST_TAG, requestTag);
         epgIntent.putExtra(EPGService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -301,14 +316,8 @@ public class TVGuideFragment extends Fragment implements BrowseSupportFragment.M
                     Toast.makeText(getActivity(), resultData.getString("MSG"), Toast.LENGTH_SHORT).show();
                 }
 
-                String returnData = resultData.getString("EPG_DATA", "");
-                EPGList epgList;
-                try {
-                     epgList = new Gson().fromJson(returnData, EPGList.class);
-                } catch(Exception e) {
-                    Toast.makeText(getActivity(), "Could not get EPG data", Toast.LENGTH_SHORT).show();
-                    return;
-                }
+                // EPGService runs in our process, the Bundle hands over the EPGList as is
+                EPGList epgList = resultData.getParcelable("EPG_DATA");
 
                 FrameLayout channelLayoutEen = getView().findViewById(R.id.epgListEen);
                 FrameLayout channelLayoutKetnet = getView().findViewById(R.id.epgListKetnet);
@@ -32,8 +32,6 @@ import android.widget.Toast;
 
 import androidx.fragment.app.Fragment;
 
-import com.google.gson.Gson;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -157,7 +155,7 @@ public class VideoLongPressListener implements View.OnLongClickListener {
                     Intent resumePointsIntent = new Intent(context, ResumePointsService.class);
                     resumePointsIntent.putExtra("ACTION", ResumePointsService.ACTION_DELETE_RESUME_POINT);
                     resumePointsIntent.putExtra("vrtnu_site_profile_vt", resultData.getString("vrtnu_site_profile_vt"));
-                    resumePointsIntent.putExtra("VIDEO_OBJECT", new Gson().toJson(video));
+                    resumePointsIntent.putExtra("VIDEO_OBJECT", video);
 
                     resumePointsIntent.putExtra(ResumePointsService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
                         @Override
@@ -194,7 +192,7 @@ public class VideoLongPressListener implements View.OnLongClickListener {
                     Intent resumePointsIntent = new Intent(context, ResumePointsService.class);
                     resumePointsIntent.putExtra("ACTION", ResumePointsService.ACTION_UPDATE_WATCH_LATER);
                     resumePointsIntent.putExtra("vrtnu_site_profile_vt", resultData.getString("vrtnu_site_profile_vt"));
-                    resumePointsIntent.putExtra("VIDEO_OBJECT", new Gson().toJson(video));
+                    resumePointsIntent.putExtra("VIDEO_OBJECT", video);
                     resumePointsIntent.putExtra("WATCH_LATER", watchLater);
 
                     resumePointsIntent.putExtra(ResumePointsService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
@@ -11,8 +11,6 @@ import android.widget.Toast;
 
 import androidx.core.app.ActivityOptionsCompat;
 
-import com.google.gson.Gson;
-
 import be.lorang.nuplayer.model.Program;
 import be.lorang.nuplayer.model.Video;
 import be.lorang.nuplayer.player.VideoPlaybackActivity;
@@ -39,7 +37,7 @@ public class VideoProgramBaseListener {
     public void startProgramIntent(Program program) {
 
         Intent programIntent = new Intent(activity.getBaseContext(), ProgramActivity.class);
-        programIntent.putExtra("PROGRAM_OBJECT", (new Gson()).toJson(program));
+        programIntent.putExtra("PROGRAM_OBJECT", program);
         Bundle bundle = ActivityOptionsCompat.makeSceneTransitionAnimation(activity).toBundle();
         activity.startActivity(programIntent, bundle);
     }
@@ -53,7 +51,7 @@ public class VideoProgramBaseListener {
         if(activity == null) { return; }
 
         Intent streamIntent = new Intent(activity, StreamService.class);
-        streamIntent.putExtra("VIDEO_OBJECT", (new Gson()).toJson(video));
+        streamIntent.putExtra("VIDEO_OBJECT", video);
         streamIntent.putExtra(StreamService.BUNDLED_LISTENER, new ResultReceiver(new Handler()) {
             @Override
             protected void onReceiveResult(int resultCode, Bundle resultData) {
@@ -75,7 +73,7 @@ public class VideoProgramBaseListener {
                     if(videoURL.length() > 0) {
 
                         Intent playbackIntent = new Intent(activity, VideoPlaybackActivity.class);
-                        playbackIntent.putExtra("VIDEO_OBJECT", (new Gson()).toJson(video));
+                        playbackIntent.putExtra("VIDEO_OBJECT", video);
                         playbackIntent.putExtra("MPEG_DASH_URL", videoURL);
                         playbackIntent.putExtra("VUALTO_TOKEN", drmToken);
                         activity.startActivity(playbackIntent);
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Size accounting and LRU eviction of the HTTPClient cache entries
+ *
+ * Keeps the size and RequestTemplate of every cache entry in access order. Each write checks the
+ * quota of its template (see CachePolicy) and the total budget and returns the least recently used keys that
+ * have to be removed to get back under them, so eviction happens a few entries at a time
+ * instead of in one big sweep.
+ *
+ * The table is built from the CacheStore index on first use, entries of earlier runs start
+ * out in the order they were written.
+ *
+ * The budget bounds the disk usage of the CacheStore: live records are evicted down to
+ * getLiveBudget(), the GARBAGE_HEADROOM left over is what overwritten and removed records may
+ * take until CacheWriter compacts the store (CacheStore.needsCompaction(maxSize)).
+ */
+class CacheBudget {
+
+    private static final String TAG = "CacheBudget";
+
+    // share (%) of the budget kept free for garbage between compactions
+    private static final int GARBAGE_HEADROOM = 25;
+
+    private long maxSize;
+    private File cacheDir;
+    private long totalSize = 0;
+
+    // key -> usage, least recently used first
+    private final LinkedHashMap<String, Usage> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<RequestTemplate, Long> templateSizes = new EnumMap<>(RequestTemplate.class);
+
+    private static class Usage {
+        private final RequestTemplate template;
+        private final long size;
+
+        private Usage(RequestTemplate template, long size) {
+            this.template = template;
+            this.size = size;
+        }
+    }
+
+    CacheBudget(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    // Size the live records may take, the rest of the budget is room for garbage
+    synchronized long getLiveBudget() {
+        return maxSize - maxSize * GARBAGE_HEADROOM / 100;
+    }
+
+    /**
+     * Account a (re)written cache entry and return the keys to evict
+     *
+     * @param cacheDir - File: cache dir
+     * @param key - String: cache key of the written entry
+     * @param template - RequestTemplate: quota group of the written entry
+     * @param size - long: size of the entry on disk
+     * @return List of keys to remove, least recently used first. Only key itself if the entry
+     * alone is larger than its quota or the live budget, it would never be evicted otherwise.
+     */
+    synchronized List<String> record(File cacheDir, String key, RequestTemplate template, long size) {
+
+        load(cacheDir);
+        remove(key);
+
+        List<String> evicted = new ArrayList<>();
+
+        long quota = CachePolicy.forTemplate(template).getQuota(maxSize);
+        long liveBudget = getLiveBudget();
+        if(size > quota || size > liveBudget) {
+            Log.d(TAG, "Not keeping " + key + ", " + size / 1024 + "KiB doesn't fit the budget of "
+                    + template.getLabel());
+            evicted.add(key);
+            return evicted;
+        }
+
+        add(key, new Usage(template, size));
+
+        // first the quota of the template we've just written to
+        Iterator<Map.Entry<String, Usage>> iterator = entries.entrySet().iterator();
+        while (getTemplateSize(template) > quota && iterator.hasNext()) {
+            Map.Entry<String, Usage> entry = iterator.next();
+            if(entry.getValue().template == template && !entry.getKey().equals(key)) {
+                iterator.remove();
+                subtract(entry.getValue());
+                evicted.add(entry.getKey());
+            }
+        }
+
+        // then the total budget, regardless of template
+        iterator = entries.entrySet().iterator();
+        while (totalSize > liveBudget && iterator.hasNext()) {
+            Map.Entry<String, Usage> entry = iterator.next();
+            if(!entry.getKey().equals(key)) {
+                iterator.remove();
+                subtract(entry.getValue());
+                evicted.add(entry.getKey());
+            }
+        }
+
+        if(evicted.size() > 0) {
+            Log.d(TAG, "Evicting " + evicted.size() + " cache entries, " + totalSize / 1024 + "KiB in use");
+        }
+
+        return evicted;
+    }
+
+    // Mark key as most recently used
+    synchronized void touch(String key) {
+        entries.get(key);
+    }
+
+    synchronized void remove(String key) {
+        Usage usage = entries.remove(key);
+        if(usage != null) {
+            subtract(usage);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        templateSizes.clear();
+        totalSize = 0;
+    }
+
+    // Occupancy per cached template, e.g. "search7/suggest: 120KiB of 6553KiB"
+    synchronized List<String> getStatistics(File cacheDir) {
+
+        load(cacheDir);
+
+        List<String> statistics = new ArrayList<>();
+        for(RequestTemplate template : RequestTemplate.values()) {
+            long quota = CachePolicy.forTemplate(template).getQuota(maxSize);
+            if(quota > 0) {
+                statistics.add(template.getLabel() + ": " + getTemplateSize(template) / 1024 + "KiB of "
+                        + quota / 1024 + "KiB");
+            }
+        }
+        return statistics;
+    }
+
+    // Build the table from the CacheStore index the first time a cache dir is used
+    synchronized void load(File cacheDir) {
+
+        if(cacheDir.equals(this.cacheDir)) {
+            return;
+        }
+
+        clear();
+        this.cacheDir = cacheDir;
+
+        for(Map.Entry<String, CacheStore.Record> entry : CacheStore.open(cacheDir).getRecords().entrySet()) {
+            add(entry.getKey(), new Usage(entry.getValue().getTemplate(), entry.getValue().getSize()));
+        }
+
+        Log.d(TAG, "Loaded " + entries.size() + " cache entries, " + totalSize / 1024 + "KiB in use");
+    }
+
+    private void add(String key, Usage usage) {
+        entries.put(key, usage);
+        templateSizes.put(usage.template, getTemplateSize(usage.template) + usage.size);
+        totalSize += usage.size;
+    }
+
+    private void subtract(Usage usage) {
+        templateSizes.put(usage.template, getTemplateSize(usage.template) - usage.size);
+        totalSize -= usage.size;
+    }
+
+    private long getTemplateSize(RequestTemplate template) {
+        Long size = templateSizes.get(template);
+        return size == null ? 0 : size;
+    }
+}
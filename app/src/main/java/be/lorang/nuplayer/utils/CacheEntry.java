@@ -0,0 +1,300 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * A single HTTPClient cache entry as stored on disk
+ *
+ * Layout (big endian):
+ *
+ *   int     magic ("NUPC")
+ *   int     format version
+ *   long    timestampCacheExpires (epoch millis)
+ *   UTF     ETag (empty if not set)
+ *   UTF     Last-Modified (empty if not set)
+ *   UTF     RequestTemplate name (quota group, see CachePolicy)
+ *   int     flags (FLAG_DEFLATE if the body is compressed)
+ *   int     content length (uncompressed)
+ *   int     stored length
+ *   long    CRC32 checksum of the stored body
+ *   byte[]  stored response body
+ *
+ * Bodies are compressed with Deflate at BEST_SPEED when that makes them smaller, JSON responses
+ * typically shrink 5-10x. Version 1 files (no flags / stored length, raw body) and version 2
+ * files (no template) are still read, their template is OTHER.
+ *
+ * Entries are stored in the segment files of CacheStore, the body is a view on the (memory
+ * mapped) segment so it's only copied while being decompressed and parsed. The expiry is
+ * always at a fixed offset so it can be updated in place without touching the body.
+ */
+class CacheEntry {
+
+    private static final int MAGIC = 0x4E555043;
+    private static final int VERSION = 3;
+    private static final int VERSION_NO_TEMPLATE = 2;
+    private static final int VERSION_UNCOMPRESSED = 1;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    // offset of timestampCacheExpires in the header (after magic + version)
+    static final int EXPIRES_OFFSET = 8;
+
+    private final long timestampCacheExpires;
+    private final String eTag;
+    private final String lastModified;
+    private final RequestTemplate template;
+    private final int flags;
+    private final int contentLength;
+    private final int storedLength;
+    private final long checksum;
+    private final ByteBuffer storedBody;
+
+    private CacheEntry(long timestampCacheExpires, String eTag, String lastModified, RequestTemplate template, int flags,
+                       int contentLength, int storedLength, long checksum, ByteBuffer storedBody) {
+        this.timestampCacheExpires = timestampCacheExpires;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.template = template;
+        this.flags = flags;
+        this.contentLength = contentLength;
+        this.storedLength = storedLength;
+        this.checksum = checksum;
+        this.storedBody = storedBody;
+    }
+
+    static CacheEntry create(byte[] body, long timestampCacheExpires, String eTag, String lastModified, RequestTemplate template,
+                             boolean compress) throws IOException {
+
+        // keep the raw body if compression doesn't gain anything (small or already compressed responses)
+        byte[] compressedBody = compress ? compress(body) : body;
+        boolean compressed = compressedBody.length < body.length;
+        byte[] storedBody = compressed ? compressedBody : body;
+
+        return new CacheEntry(
+                timestampCacheExpires,
+                eTag == null ? "" : eTag,
+                lastModified == null ? "" : lastModified,
+                template,
+                compressed ? FLAG_DEFLATE : 0,
+                body.length,
+                storedBody.length,
+                calculateChecksum(ByteBuffer.wrap(storedBody)),
+                ByteBuffer.wrap(storedBody)
+        );
+    }
+
+    // Read header and body of a cache file of the one-file-per-url layout, see CacheStore
+    static CacheEntry read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CacheEntry header = readHeader(input);
+
+            byte[] storedBody = new byte[header.storedLength];
+            input.readFully(storedBody);
+
+            return header.withBody(ByteBuffer.wrap(storedBody));
+        }
+    }
+
+    // Read header only from a serialized entry, body is not touched
+    static CacheEntry readHeader(ByteBuffer buffer) throws IOException {
+        return readHeader(new DataInputStream(new ByteBufferInputStream(buffer.duplicate())));
+    }
+
+    // Read header and body from a serialized entry, the body stays a view on the buffer
+    static CacheEntry read(ByteBuffer buffer) throws IOException {
+        ByteBuffer input = buffer.duplicate();
+        CacheEntry header = readHeader(new DataInputStream(new ByteBufferInputStream(input)));
+
+        if(input.remaining() < header.storedLength) {
+            throw new IOException("Truncated cache entry");
+        }
+
+        ByteBuffer storedBody = input.slice();
+        storedBody.limit(header.storedLength);
+
+        return header.withBody(storedBody);
+    }
+
+    // Header combined with its body, validates the checksum
+    private CacheEntry withBody(ByteBuffer storedBody) throws IOException {
+        if(calculateChecksum(storedBody) != checksum) {
+            throw new IOException("Checksum mismatch in cache entry");
+        }
+
+        return new CacheEntry(timestampCacheExpires, eTag, lastModified, template, flags,
+                contentLength, storedLength, checksum, storedBody);
+    }
+
+    private static CacheEntry readHeader(DataInputStream input) throws IOException {
+        if(input.readInt() != MAGIC) {
+            throw new IOException("Not a cache file");
+        }
+
+        int version = input.readInt();
+        if(version != VERSION && version != VERSION_NO_TEMPLATE && version != VERSION_UNCOMPRESSED) {
+            throw new IOException("Unsupported cache file version " + version);
+        }
+
+        long timestampCacheExpires = input.readLong();
+        String eTag = input.readUTF();
+        String lastModified = input.readUTF();
+        RequestTemplate template = version >= VERSION ? RequestTemplate.fromName(input.readUTF()) : RequestTemplate.OTHER;
+        int flags = version >= VERSION_NO_TEMPLATE ? input.readInt() : 0;
+        int contentLength = input.readInt();
+        int storedLength = version >= VERSION_NO_TEMPLATE ? input.readInt() : contentLength;
+        long checksum = input.readLong();
+
+        return new CacheEntry(timestampCacheExpires, eTag, lastModified, template, flags, contentLength, storedLength, checksum, null);
+    }
+
+    // Serialized entry (header + body) as appended to a segment file
+    byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(storedLength + 128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(timestampCacheExpires);
+            output.writeUTF(eTag);
+            output.writeUTF(lastModified);
+            output.writeUTF(template.name());
+            output.writeInt(flags);
+            output.writeInt(contentLength);
+            output.writeInt(storedLength);
+            output.writeLong(checksum);
+
+            ByteBuffer body = storedBody.duplicate();
+            byte[] buffer = new byte[Math.min(8192, Math.max(1, body.remaining()))];
+            while(body.hasRemaining()) {
+                int length = Math.min(buffer.length, body.remaining());
+                body.get(buffer, 0, length);
+                output.write(buffer, 0, length);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(byte[] body) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            try (DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(output, deflater, 8192)) {
+                deflaterOutput.write(body);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long calculateChecksum(ByteBuffer body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.duplicate());
+        return crc32.getValue();
+    }
+
+    boolean isExpired() {
+        return System.currentTimeMillis() >= timestampCacheExpires;
+    }
+
+    // True if the server sent an ETag or Last-Modified so the entry can be revalidated
+    boolean hasValidators() {
+        return eTag.length() > 0 || lastModified.length() > 0;
+    }
+
+    long getTimestampCacheExpires() {
+        return timestampCacheExpires;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    RequestTemplate getTemplate() {
+        return template;
+    }
+
+    // Uncompressed size of the response body
+    int getContentLength() {
+        return contentLength;
+    }
+
+    // Size of the body as stored on disk
+    int getStoredLength() {
+        return storedLength;
+    }
+
+    // Stream of the uncompressed response body, decompressed while it's being read
+    InputStream openBody() {
+        InputStream input = new ByteBufferInputStream(storedBody.duplicate());
+        if((flags & FLAG_DEFLATE) != 0) {
+            return new InflaterInputStream(input);
+        }
+        return input;
+    }
+
+    // InputStream reading (and advancing) a ByteBuffer
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if(length == 0) {
+                return 0;
+            }
+            if(!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * How HTTPClient caches the responses of a RequestTemplate
+ *
+ * All caching decisions live in the table below instead of being passed around as magic
+ * numbers by the services, HTTPClient looks up the policy of every cached request by its URL.
+ * Policies share their key with RequestMetrics so the effect of a change shows up per policy
+ * in the developer mode statistics.
+ *
+ * The quota is the share (%) of the HTTPClient cache budget the entries of a template may take,
+ * quotas add up to more than 100% as not every template is filled up at the same time.
+ */
+public final class CachePolicy {
+
+    public enum Revalidation {
+        CONDITIONAL,    // expired entries with an ETag / Last-Modified are revalidated (304 Not Modified)
+        NONE            // expired entries are always downloaded again
+    }
+
+    // Order of background refreshes (and other queued work), highest first
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    private static final Map<RequestTemplate, CachePolicy> policies = createPolicies();
+
+    // Responses that are never cached (user data, tokens, login)
+    private static final CachePolicy NO_CACHE = new CachePolicy(0, 0, Revalidation.NONE, Priority.NORMAL, false, false, 0);
+
+    private final int ttl;
+    private final int maxStale;
+    private final Revalidation revalidation;
+    private final Priority priority;
+    private final boolean compressed;
+    private final boolean memoryCached;
+    private final int quotaPercentage;
+
+    /**
+     * @param ttl - Integer: minutes a cached response is valid
+     * @param maxStale - Integer: minutes an expired response may still be returned while it's refreshed in the background
+     * @param revalidation - Revalidation: how expired responses are refreshed
+     * @param priority - Priority: priority of background refreshes
+     * @param compressed - boolean: deflate the body on disk
+     * @param memoryCached - boolean: keep the parsed response in the memory tier
+     * @param quotaPercentage - Integer: share (%) of the cache budget
+     */
+    private CachePolicy(int ttl, int maxStale, Revalidation revalidation, Priority priority, boolean compressed, boolean memoryCached,
+                        int quotaPercentage) {
+        this.ttl = ttl;
+        this.maxStale = maxStale;
+        this.revalidation = revalidation;
+        this.priority = priority;
+        this.compressed = compressed;
+        this.memoryCached = memoryCached;
+        this.quotaPercentage = quotaPercentage;
+    }
+
+    private static Map<RequestTemplate, CachePolicy> createPolicies() {
+
+        Map<RequestTemplate, CachePolicy> policies = new EnumMap<>(RequestTemplate.class);
+
+        // catalog per programType: changes a few times a day, it has a listener to rebuild itself
+        // so it's served stale and refreshed when expired
+        policies.put(RequestTemplate.CATALOG, new CachePolicy(30, 10080, Revalidation.CONDITIONAL, Priority.HIGH, true, true, 15));
+
+        // series fallback when the series page has none, the same as the series page itself
+        policies.put(RequestTemplate.SERIES_SUGGEST, new CachePolicy(1440, 10080, Revalidation.CONDITIONAL, Priority.NORMAL, true, true, 5));
+
+        // programs per category
+        policies.put(RequestTemplate.SUGGEST, new CachePolicy(60, 0, Revalidation.CONDITIONAL, Priority.HIGH, true, true, 20));
+
+        // episodes of a program, latest videos
+        policies.put(RequestTemplate.SEARCH, new CachePolicy(30, 0, Revalidation.CONDITIONAL, Priority.HIGH, true, true, 40));
+
+        // EPG schedule per day
+        policies.put(RequestTemplate.EPG_SCHEDULE, new CachePolicy(60, 0, Revalidation.CONDITIONAL, Priority.NORMAL, true, true, 10));
+
+        // categories, series and seasons model.json pages hardly ever change, the category and series
+        // lists are served stale, seasons (no listener) are downloaded again when expired
+        policies.put(RequestTemplate.PAGES, new CachePolicy(1440, 10080, Revalidation.CONDITIONAL, Priority.NORMAL, true, true, 25));
+
+        // single video lookups of resume points: small, plenty and they don't change
+        policies.put(RequestTemplate.VIDEO_LOOKUP, new CachePolicy(43200, 0, Revalidation.NONE, Priority.LOW, false, false, 15));
+
+        // anything else requested through getCachedRequest
+        policies.put(RequestTemplate.OTHER, new CachePolicy(30, 0, Revalidation.CONDITIONAL, Priority.NORMAL, true, true, 10));
+
+        return Collections.unmodifiableMap(policies);
+    }
+
+    public static CachePolicy forTemplate(RequestTemplate template) {
+        CachePolicy policy = policies.get(template);
+        return policy == null ? NO_CACHE : policy;
+    }
+
+    public static CachePolicy forUrl(String url) {
+        return forTemplate(RequestTemplate.fromUrl(url));
+    }
+
+    // Minutes a cached response is valid, 0 if responses aren't cached
+    public int getTtl() {
+        return ttl;
+    }
+
+    // Minutes an expired response may still be returned, refreshed in the background. Only applies
+    // to requests with a CacheUpdateListener, see HTTPClient.getCachedRequest()
+    public int getMaxStale() {
+        return maxStale;
+    }
+
+    public Revalidation getRevalidation() {
+        return revalidation;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public boolean isMemoryCached() {
+        return memoryCached;
+    }
+
+    // Bytes the entries of this template may take of a cache budget of maxCacheSize
+    public long getQuota(long maxCacheSize) {
+        return maxCacheSize * quotaPercentage / 100;
+    }
+
+    public boolean isCacheable() {
+        return ttl > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ttl " + ttl + "m, max-stale " + maxStale + "m, " + revalidation + ", " + priority
+                + (compressed ? ", compressed" : "") + (memoryCached ? ", memory" : "") + ", quota " + quotaPercentage + "%";
+    }
+}
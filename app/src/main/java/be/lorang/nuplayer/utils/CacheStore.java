@@ -0,0 +1,624 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Log structured store of the HTTPClient cache entries
+ *
+ * Entries are appended to a few segment files (url-cache-segment-<id>.pack) in the cache dir
+ * instead of one file per url, an in-memory index maps every cache key to its record so a lookup
+ * doesn't touch the file system. Overwritten and removed records stay behind as garbage until
+ * compact() copies the live records to new segments. Full segments are memory mapped once,
+ * reading an entry just slices the mapping.
+ *
+ * Record layout (big endian):
+ *
+ *   int     magic ("NUPR")
+ *   int     entry length (REMOVED for a removal)
+ *   long    sweep timestamp, the startup sweep may drop the entry after this moment
+ *   UTF     cache key
+ *   byte[]  serialized CacheEntry
+ *
+ * The index is built by scanning the segments when the store is opened, a partially written
+ * record (app killed halfway a write) is cut off. Cache files of the earlier one-file-per-url
+ * layout are moved into the store at that moment.
+ */
+class CacheStore {
+
+    private static final String TAG = "CacheStore";
+
+    private static final String SEGMENT_FILE_PREFIX = "url-cache-segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".pack";
+
+    // one-file-per-url layout, see migrateLegacyFiles()
+    private static final String LEGACY_FILE_PREFIX = "url-cache-";
+    private static final String LEGACY_FILE_SUFFIX = ".bin";
+    private static final String LEGACY_JSON_FILE_SUFFIX = ".json";
+    private static final String LEGACY_JOURNAL_FILE = "url-cache.journal";
+
+    private static final int RECORD_MAGIC = 0x4E555052;
+    private static final int REMOVED = -1;
+
+    // offset of the sweep timestamp in a record (after magic + entry length)
+    private static final int SWEEP_OFFSET = 8;
+
+    // magic + entry length + sweep timestamp + key length, the key itself follows
+    private static final int RECORD_HEADER_SIZE = 18;
+
+    private static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    // compact once at least this much garbage piled up and it outweighs the live records
+    private static final long MIN_COMPACTION_GARBAGE = 1024 * 1024;
+
+    private static final Map<File, CacheStore> stores = new HashMap<>();
+
+    private final File cacheDir;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    // key -> record, oldest write first
+    private final LinkedHashMap<String, Record> index = new LinkedHashMap<>();
+
+    private Segment activeSegment;
+    private long liveSize = 0;
+    private long garbageSize = 0;
+
+    private static class Segment {
+
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+
+        // read only mapping, only set once the segment is full
+        private MappedByteBuffer mapping;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = channel.size();
+        }
+
+        // Region of the segment, a view on the mapping once sealed
+        private ByteBuffer read(long position, int length) throws IOException {
+
+            if(mapping != null) {
+                ByteBuffer region = mapping.duplicate();
+                region.position((int) position);
+                region.limit((int) position + length);
+                return region.slice();
+            }
+
+            ByteBuffer region = ByteBuffer.allocate(length);
+            while(region.hasRemaining()) {
+                if(channel.read(region, position + region.position()) < 0) {
+                    throw new EOFException("Record beyond end of " + file.getName());
+                }
+            }
+            region.flip();
+            return region;
+        }
+
+        private void write(ByteBuffer buffer, long position) throws IOException {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+
+        private void seal() throws IOException {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.d(TAG, "Could not close " + file.getName() + ": " + e.getMessage());
+            }
+            file.delete();
+        }
+    }
+
+    // Location of a live entry
+    static class Record {
+
+        private final Segment segment;
+        private final long position;
+        private final int headerSize;
+        private final int entryLength;
+        private final RequestTemplate template;
+
+        private Record(Segment segment, long position, int headerSize, int entryLength, RequestTemplate template) {
+            this.segment = segment;
+            this.position = position;
+            this.headerSize = headerSize;
+            this.entryLength = entryLength;
+            this.template = template;
+        }
+
+        RequestTemplate getTemplate() {
+            return template;
+        }
+
+        // Size of the record in its segment
+        int getSize() {
+            return headerSize + entryLength;
+        }
+    }
+
+    private CacheStore(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    // Store of cacheDir, the index is built the first time
+    static CacheStore open(File cacheDir) {
+        synchronized (stores) {
+            CacheStore store = stores.get(cacheDir);
+            if(store == null) {
+                store = new CacheStore(cacheDir);
+                store.load();
+                stores.put(cacheDir, store);
+            }
+            return store;
+        }
+    }
+
+    // Close the segments of cacheDir's store, the next open() rebuilds the index from disk (like
+    // an app restart does)
+    static void close(File cacheDir) {
+        synchronized (stores) {
+            CacheStore store = stores.remove(cacheDir);
+            if(store != null) {
+                store.closeSegments();
+            }
+        }
+    }
+
+    /**
+     * Look up a cache entry, the body is read from the memory mapped segment
+     *
+     * @param key - String: cache key
+     * @return CacheEntry or null if there is none
+     */
+    CacheEntry get(String key) throws IOException {
+
+        ByteBuffer entry;
+        synchronized (this) {
+            Record record = index.get(key);
+            if(record == null) {
+                return null;
+            }
+            entry = record.segment.read(record.position + record.headerSize, record.entryLength);
+        }
+
+        // checksum and header parsing don't need the lock, mappings stay valid after compaction
+        return CacheEntry.read(entry);
+    }
+
+    synchronized void put(String key, CacheEntry cacheEntry, long sweepTimestamp) throws IOException {
+        Record record = append(key, cacheEntry.toByteArray(), sweepTimestamp, cacheEntry.getTemplate());
+        removeFromIndex(key);
+        index.put(key, record);
+        liveSize += record.getSize();
+    }
+
+    // Set a new expiry (e.g. after a 304 Not Modified) in place, returns false if key isn't stored
+    synchronized boolean updateExpiry(String key, long timestampCacheExpires, long sweepTimestamp) throws IOException {
+
+        Record record = index.get(key);
+        if(record == null) {
+            return false;
+        }
+
+        writeLong(record.segment, record.position + SWEEP_OFFSET, sweepTimestamp);
+        writeLong(record.segment, record.position + record.headerSize + CacheEntry.EXPIRES_OFFSET, timestampCacheExpires);
+        return true;
+    }
+
+    synchronized void remove(String key) {
+
+        if(removeFromIndex(key) == null) {
+            return;
+        }
+
+        try {
+            garbageSize += append(key, null, 0, RequestTemplate.OTHER).getSize();
+        } catch (IOException e) {
+            // the entry comes back on the next start, it's still a valid response
+            Log.d(TAG, "Could not write removal of " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove all entries past their sweep timestamp
+     *
+     * @return List of removed keys
+     */
+    synchronized List<String> removeExpired() {
+
+        List<String> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for(Map.Entry<String, Record> entry : index.entrySet()) {
+            try {
+                Record record = entry.getValue();
+                if(now >= readLong(record.segment, record.position + SWEEP_OFFSET)) {
+                    expired.add(entry.getKey());
+                }
+            } catch (IOException e) {
+                expired.add(entry.getKey());
+            }
+        }
+
+        for(String key : expired) {
+            remove(key);
+        }
+
+        return expired;
+    }
+
+    /*
+     * Compaction pays off once at least MIN_COMPACTION_GARBAGE piled up and it outweighs the live
+     * records. It's also needed as soon as the garbage pushes the segments over maxDiskSize (the
+     * CacheBudget), eviction only keeps the live records within their share of it.
+     */
+    synchronized boolean needsCompaction(long maxDiskSize) {
+        return (garbageSize >= MIN_COMPACTION_GARBAGE && garbageSize >= liveSize)
+                || (garbageSize > 0 && liveSize + garbageSize > maxDiskSize);
+    }
+
+    /*
+     * Copy the live records to new segments and delete the old ones, only done when there's
+     * enough garbage (see needsCompaction()), maxDiskSize is the disk budget of the cache.
+     * CacheWriter schedules it as writes and removals pile up garbage, the startup sweep runs it
+     * after removing the expired entries. Old segments are deleted oldest first so an interrupted
+     * compaction still leaves a consistent store: later segments win when the index is rebuilt.
+     * A compaction that fails halfway is rolled back to the old segments.
+     */
+    synchronized void compact(long maxDiskSize) {
+
+        if(!needsCompaction(maxDiskSize)) {
+            return;
+        }
+
+        List<Segment> oldSegments = new ArrayList<>(segments.values());
+        Segment oldActiveSegment = activeSegment;
+        Map<String, Record> oldRecords = new HashMap<>(index);
+        activeSegment = null;
+
+        try {
+            for(Map.Entry<String, Record> entry : index.entrySet()) {
+                Record record = entry.getValue();
+                ByteBuffer bytes = record.segment.read(record.position, record.getSize());
+
+                Segment segment = getActiveSegment();
+                long position = segment.size;
+                segment.write(bytes.duplicate(), position);
+                segment.size += record.getSize();
+
+                entry.setValue(new Record(segment, position, record.headerSize, record.entryLength, record.template));
+            }
+        } catch (IOException e) {
+            // the old segments are still complete, point the index back at them and drop the
+            // new ones, the sizes are those of the old segments again
+            Log.d(TAG, "Compaction failed, rolling back: " + e.getMessage());
+            index.replaceAll((key, record) -> oldRecords.get(key));
+            for(Segment segment : new ArrayList<>(segments.values())) {
+                if(!oldSegments.contains(segment)) {
+                    segments.remove(segment.id);
+                    segment.delete();
+                }
+            }
+            activeSegment = oldActiveSegment;
+            return;
+        }
+
+        for(Segment segment : oldSegments) {
+            segments.remove(segment.id);
+            segment.delete();
+        }
+
+        Log.d(TAG, "Compacted " + oldSegments.size() + " segments, removed " + garbageSize / 1024 + "KiB garbage");
+        garbageSize = 0;
+    }
+
+    private synchronized void closeSegments() {
+        for(Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                Log.d(TAG, "Could not close " + segment.file.getName() + ": " + e.getMessage());
+            }
+        }
+        segments.clear();
+        index.clear();
+        activeSegment = null;
+        liveSize = 0;
+        garbageSize = 0;
+    }
+
+    synchronized void clear() {
+
+        for(Segment segment : segments.values()) {
+            segment.delete();
+        }
+
+        segments.clear();
+        index.clear();
+        activeSegment = null;
+        liveSize = 0;
+        garbageSize = 0;
+    }
+
+    // Live records by key, oldest write first
+    synchronized Map<String, Record> getRecords() {
+        return new LinkedHashMap<>(index);
+    }
+
+    // Size of the record of key in its segment, 0 if key isn't stored
+    synchronized long getRecordSize(String key) {
+        Record record = index.get(key);
+        return record == null ? 0 : record.getSize();
+    }
+
+    synchronized int getCount() {
+        return index.size();
+    }
+
+    // Size of all segments, including garbage
+    synchronized long getDiskSize() {
+        return liveSize + garbageSize;
+    }
+
+    synchronized long getGarbageSize() {
+        return garbageSize;
+    }
+
+    private Record removeFromIndex(String key) {
+        Record record = index.remove(key);
+        if(record != null) {
+            liveSize -= record.getSize();
+            garbageSize += record.getSize();
+        }
+        return record;
+    }
+
+    // Append a record to the active segment, entry is null for a removal
+    private Record append(String key, byte[] entry, long sweepTimestamp, RequestTemplate template) throws IOException {
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int headerSize = RECORD_HEADER_SIZE + keyBytes.length;
+        int entryLength = entry == null ? 0 : entry.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + entryLength);
+        buffer.putInt(RECORD_MAGIC);
+        buffer.putInt(entry == null ? REMOVED : entry.length);
+        buffer.putLong(sweepTimestamp);
+        buffer.putShort((short) keyBytes.length);
+        buffer.put(keyBytes);
+        if(entry != null) {
+            buffer.put(entry);
+        }
+        buffer.flip();
+
+        Segment segment = getActiveSegment();
+        long position = segment.size;
+        segment.write(buffer, position);
+        segment.size += buffer.limit();
+
+        return new Record(segment, position, headerSize, entryLength, template);
+    }
+
+    // Segment to append to, a new one is started when the current one is full
+    private Segment getActiveSegment() throws IOException {
+
+        if(activeSegment != null && activeSegment.size < MAX_SEGMENT_SIZE) {
+            return activeSegment;
+        }
+
+        if(activeSegment != null) {
+            activeSegment.seal();
+        }
+
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        activeSegment = new Segment(id, new File(cacheDir, getSegmentFileName(id)));
+        segments.put(id, activeSegment);
+        return activeSegment;
+    }
+
+    private static void writeLong(Segment segment, long position, long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(value);
+        buffer.flip();
+        segment.write(buffer, position);
+    }
+
+    private static long readLong(Segment segment, long position) throws IOException {
+        return segment.read(position, 8).getLong();
+    }
+
+    private static String getSegmentFileName(int id) {
+        return SEGMENT_FILE_PREFIX + id + SEGMENT_FILE_SUFFIX;
+    }
+
+    // Build the index from the segment files and migrate cache files of the old layout
+    private synchronized void load() {
+
+        File[] files = cacheDir.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX));
+
+        if(files != null) {
+            for(File file : files) {
+                String name = file.getName();
+                try {
+                    int id = Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+                    segments.put(id, new Segment(id, file));
+                } catch (NumberFormatException | IOException e) {
+                    Log.d(TAG, "Removing unreadable segment " + name);
+                    file.delete();
+                }
+            }
+        }
+
+        // oldest first, later records of a key replace earlier ones
+        Iterator<Segment> iterator = segments.values().iterator();
+        while(iterator.hasNext()) {
+            Segment segment = iterator.next();
+            try {
+                scan(segment);
+                if(iterator.hasNext() || segment.size >= MAX_SEGMENT_SIZE) {
+                    segment.seal();
+                } else {
+                    activeSegment = segment;
+                }
+            } catch (IOException e) {
+                Log.d(TAG, "Could not read segment " + segment.file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        migrateLegacyFiles();
+
+        Log.d(TAG, "Loaded " + index.size() + " cache entries from " + segments.size() + " segments, "
+                + liveSize / 1024 + "KiB live, " + garbageSize / 1024 + "KiB garbage");
+    }
+
+    private void scan(Segment segment) throws IOException {
+
+        ByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+        int end = 0;
+
+        try {
+            while(buffer.remaining() >= RECORD_HEADER_SIZE) {
+
+                int position = buffer.position();
+                if(buffer.getInt() != RECORD_MAGIC) {
+                    break;
+                }
+
+                int entryLength = buffer.getInt();
+                buffer.getLong();
+                byte[] keyBytes = new byte[buffer.getShort() & 0xffff];
+                buffer.get(keyBytes);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                int headerSize = buffer.position() - position;
+
+                if(entryLength == REMOVED) {
+                    removeFromIndex(key);
+                    garbageSize += headerSize;
+                    end = buffer.position();
+                    continue;
+                }
+
+                if(entryLength < 0 || buffer.remaining() < entryLength) {
+                    break;
+                }
+
+                ByteBuffer entry = buffer.slice();
+                entry.limit(entryLength);
+                RequestTemplate template = CacheEntry.readHeader(entry).getTemplate();
+                buffer.position(buffer.position() + entryLength);
+
+                removeFromIndex(key);
+                Record record = new Record(segment, position, headerSize, entryLength, template);
+                index.put(key, record);
+                liveSize += record.getSize();
+                end = buffer.position();
+            }
+        } catch (BufferUnderflowException | IOException e) {
+            // partially written record, handled below
+        }
+
+        segment.size = end;
+        if(end < segment.channel.size()) {
+            Log.d(TAG, "Truncating " + segment.file.getName() + " at " + end + " of " + segment.channel.size() + " bytes");
+            segment.channel.truncate(end);
+        }
+    }
+
+    /*
+     * Move the url-cache-<key>.bin files (and the even older url-cache-<key>.json files) of the
+     * one-file-per-url layout into the store, least recently used first
+     */
+    private void migrateLegacyFiles() {
+
+        new File(cacheDir, LEGACY_JOURNAL_FILE).delete();
+
+        File[] files = cacheDir.listFiles((dir, name) -> name.startsWith(LEGACY_FILE_PREFIX) &&
+                (name.endsWith(LEGACY_FILE_SUFFIX) || name.endsWith(LEGACY_JSON_FILE_SUFFIX)));
+
+        if(files == null || files.length == 0) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        int migrated = 0;
+        for(File file : files) {
+            String name = file.getName();
+            try {
+                CacheEntry cacheEntry = name.endsWith(LEGACY_JSON_FILE_SUFFIX) ? readLegacyJSONFile(file) : CacheEntry.read(file);
+                String key = name.substring(LEGACY_FILE_PREFIX.length(), name.lastIndexOf('.'));
+                put(key, cacheEntry, HTTPClient.getSweepTimestamp(cacheEntry, 0));
+                migrated++;
+            } catch (Exception e) {
+                Log.d(TAG, "Could not migrate cache file " + name + ": " + e.getMessage());
+            } finally {
+                file.delete();
+            }
+        }
+
+        Log.d(TAG, "Migrated " + migrated + " of " + files.length + " cache files");
+    }
+
+    // {"timestampCacheExpires":..., "object":"<JSON string>"}
+    private static CacheEntry readLegacyJSONFile(File file) throws IOException, JSONException {
+
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            input.readFully(data);
+        }
+
+        JSONObject cacheObject = new JSONObject(new String(data, StandardCharsets.UTF_8));
+        byte[] body = cacheObject.getString("object").getBytes(StandardCharsets.UTF_8);
+        return CacheEntry.create(body, cacheObject.getLong("timestampCacheExpires"), null, null, RequestTemplate.OTHER, true);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Write-behind of HTTPClient cache entries
+ *
+ * The request thread only hands over the raw response bytes (tee'd while the response was
+ * parsed), compressing them and appending them to the CacheStore is done on a background thread
+ * so callers get their data as soon as it's parsed. Until then the entry is served from the
+ * pending writes so a lookup never misses a response that was just downloaded.
+ *
+ * Writes, removals and clears of a key are serialized on this object: a write that was
+ * superseded or removed while it was queued is dropped instead of resurrecting old data.
+ * When the queue holds more than MAX_PENDING_BYTES the request thread writes itself.
+ *
+ * Every overwrite, eviction and removal leaves garbage in the segments of the CacheStore, once
+ * there's enough of it, or it pushes the store over the CacheBudget, a compaction is queued on
+ * the writer thread as well.
+ */
+class CacheWriter {
+
+    private static final String TAG = "CacheWriter";
+
+    private static final long MAX_PENDING_BYTES = 8 * 1024 * 1024;
+
+    private final CacheBudget cacheBudget;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // cache key -> entry that isn't in the CacheStore yet
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+    private long pendingBytes = 0;
+
+    // a compaction is queued on the executor
+    private boolean compactionQueued = false;
+
+    private static class PendingWrite {
+        private final File cacheDir;
+        private final byte[] body;
+        private final long timestampCacheExpires;
+        private final String eTag;
+        private final String lastModified;
+        private final RequestTemplate template;
+        private final boolean compress;
+        private final int maxStale;
+
+        private PendingWrite(File cacheDir, byte[] body, long timestampCacheExpires, String eTag, String lastModified,
+                             RequestTemplate template, boolean compress, int maxStale) {
+            this.cacheDir = cacheDir;
+            this.body = body;
+            this.timestampCacheExpires = timestampCacheExpires;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.template = template;
+            this.compress = compress;
+            this.maxStale = maxStale;
+        }
+
+        private CacheEntry toCacheEntry(boolean compress) throws IOException {
+            return CacheEntry.create(body, timestampCacheExpires, eTag, lastModified, template, compress);
+        }
+    }
+
+    CacheWriter(CacheBudget cacheBudget) {
+        this.cacheBudget = cacheBudget;
+    }
+
+    /**
+     * Queue a cache entry for writing
+     *
+     * @param cacheDir - File: cache dir
+     * @param cacheKey - String: cache key of the url
+     * @param body - byte[]: raw response body, not modified afterwards
+     * @param timestampCacheExpires - long: expiry (epoch millis)
+     * @param eTag - String: ETag header, can be null
+     * @param lastModified - String: Last-Modified header, can be null
+     * @param template - RequestTemplate: quota group, see CachePolicy
+     * @param compress - boolean: deflate the body on disk
+     * @param maxStale - Integer: minutes the entry may be served stale, keeps it from the startup sweep
+     */
+    void write(File cacheDir, String cacheKey, byte[] body, long timestampCacheExpires, String eTag, String lastModified,
+               RequestTemplate template, boolean compress, int maxStale) {
+
+        PendingWrite write = new PendingWrite(cacheDir, body, timestampCacheExpires, eTag, lastModified, template, compress, maxStale);
+
+        boolean queue;
+        synchronized (this) {
+            PendingWrite previous = pendingWrites.put(cacheKey, write);
+            if(previous != null) {
+                pendingBytes -= previous.body.length;
+            }
+            pendingBytes += body.length;
+            queue = pendingBytes <= MAX_PENDING_BYTES;
+        }
+
+        if(queue) {
+            executor.execute(() -> persist(cacheKey, write));
+        } else {
+            Log.d(TAG, "Write queue full, writing " + cacheKey + " right away");
+            persist(cacheKey, write);
+        }
+    }
+
+    // Cache entry of key, pending or from the CacheStore, null if there is none
+    CacheEntry read(File cacheDir, String cacheKey) throws IOException {
+
+        PendingWrite write;
+        synchronized (this) {
+            write = pendingWrites.get(cacheKey);
+        }
+
+        // no need to compress an entry that's only read once or twice from memory
+        if(write != null) {
+            return write.toCacheEntry(false);
+        }
+
+        return CacheStore.open(cacheDir).get(cacheKey);
+    }
+
+    synchronized void remove(File cacheDir, String cacheKey) {
+        removePending(cacheKey);
+        CacheStore cacheStore = CacheStore.open(cacheDir);
+        cacheStore.remove(cacheKey);
+        cacheBudget.remove(cacheKey);
+        scheduleCompaction(cacheStore);
+    }
+
+    synchronized void clear(File cacheDir) {
+        pendingWrites.clear();
+        pendingBytes = 0;
+        CacheStore.open(cacheDir).clear();
+        cacheBudget.clear();
+    }
+
+    synchronized int getPendingCount() {
+        return pendingWrites.size();
+    }
+
+    private void persist(String cacheKey, PendingWrite write) {
+
+        try {
+            // compression doesn't need the lock
+            CacheEntry cacheEntry = write.toCacheEntry(write.compress);
+            CacheStore cacheStore = CacheStore.open(write.cacheDir);
+
+            synchronized (this) {
+                // superseded by a newer response or removed while queued
+                if(pendingWrites.get(cacheKey) != write) {
+                    return;
+                }
+
+                cacheStore.put(cacheKey, cacheEntry, HTTPClient.getSweepTimestamp(cacheEntry, write.maxStale));
+                removePending(cacheKey);
+                List<String> evicted = cacheBudget.record(write.cacheDir, cacheKey, write.template,
+                        cacheStore.getRecordSize(cacheKey));
+
+                // under the lock, so a newer write of an evicted key can't be removed instead
+                // (parsed copies in the memory tier expire on their own)
+                for(String evictedKey : evicted) {
+                    cacheStore.remove(evictedKey);
+                }
+            }
+
+            scheduleCompaction(cacheStore);
+
+        } catch (IOException e) {
+            Log.d(TAG, "Could not write cache entry " + cacheKey + ": " + e.getMessage());
+            synchronized (this) {
+                if(pendingWrites.get(cacheKey) == write) {
+                    removePending(cacheKey);
+                }
+            }
+        }
+    }
+
+    // Queue a compaction behind the pending writes if the store has enough garbage, one at a time
+    private void scheduleCompaction(CacheStore cacheStore) {
+
+        if(!cacheStore.needsCompaction(cacheBudget.getMaxSize())) {
+            return;
+        }
+
+        synchronized (this) {
+            if(compactionQueued) {
+                return;
+            }
+            compactionQueued = true;
+        }
+
+        executor.execute(() -> {
+            synchronized (this) {
+                compactionQueued = false;
+            }
+            cacheStore.compact(cacheBudget.getMaxSize());
+        });
+    }
+
+    private void removePending(String cacheKey) {
+        PendingWrite write = pendingWrites.remove(cacheKey);
+        if(write != null) {
+            pendingBytes -= write.body.length;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+ * Circuit breaker of a single host
+ *
+ * After FAILURE_THRESHOLD consecutive failures (exceptions, 5xx, 429) the breaker opens and
+ * requests to the host fail fast for OPEN_DURATION, callers fall back to cached data. After that
+ * one trial request is let through (half open): success closes the breaker, failure opens it again.
+ */
+class CircuitBreaker {
+
+    private static final String TAG = "CircuitBreaker";
+
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_DURATION = TimeUnit.SECONDS.toMillis(30);
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String host;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long totalFailures = 0;
+    private long openedAt = 0;
+    private long trialStartedAt = 0;
+
+    CircuitBreaker(String host) {
+        this(host, System::currentTimeMillis);
+    }
+
+    // clock: current time in millis
+    CircuitBreaker(String host, LongSupplier clock) {
+        this.host = host;
+        this.clock = clock;
+    }
+
+    // Returns false if requests to the host should fail fast
+    synchronized boolean allowRequest() {
+
+        long now = clock.getAsLong();
+
+        switch (state) {
+            case OPEN:
+                if(now - openedAt < OPEN_DURATION) {
+                    return false;
+                }
+                Log.d(TAG, "Half opening circuit of " + host);
+                state = State.HALF_OPEN;
+                trialStartedAt = now;
+                return true;
+
+            case HALF_OPEN:
+                // a single trial at a time, unless the previous one never reported back (cancelled)
+                if(now - trialStartedAt < OPEN_DURATION) {
+                    return false;
+                }
+                trialStartedAt = now;
+                return true;
+
+            default:
+                return true;
+        }
+    }
+
+    synchronized void recordSuccess() {
+        if(state != State.CLOSED) {
+            Log.d(TAG, "Closing circuit of " + host);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        totalFailures++;
+
+        if(state == State.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+            if(state != State.OPEN) {
+                Log.d(TAG, "Opening circuit of " + host + " after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        totalFailures = 0;
+    }
+
+    // e.g. "search7.vrt.be: OPEN (5 consecutive, 12 total failures)"
+    synchronized String getStatus() {
+        return host + ": " + state + " (" + consecutiveFailures + " consecutive, " + totalFailures + " total failures)";
+    }
+}
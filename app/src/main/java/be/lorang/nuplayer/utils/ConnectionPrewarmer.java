@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import be.lorang.nuplayer.BuildConfig;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.CookieJar;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/*
+ * Opens connections to the API hosts at launch, before the first request needs them
+ *
+ * A HEAD request per host resolves it and sets up TCP + TLS (+ HTTP/2) while the UI is still
+ * starting, the connection then waits in the connection pool shared by all HTTPClient requests.
+ * The requests run in parallel on the OkHttp dispatcher, redirects aren't followed and no cookies
+ * are sent. Their outcome is recorded in RequestMetrics, compare the "first byte on new / reused
+ * connection" timings of the first requests with and without pre-warming to see what it gains.
+ */
+public final class ConnectionPrewarmer {
+
+    private static final String TAG = "ConnectionPrewarmer";
+
+    private static final long PREWARM_TIMEOUT = 10;
+
+    private static boolean started = false;
+
+    private ConnectionPrewarmer() {}
+
+    /**
+     * Pre-warm a connection to the host of each url, only the first call has effect
+     *
+     * @param urls - List<String>: urls (or url templates) of the hosts to connect to, duplicate hosts are skipped
+     */
+    public static synchronized void start(List<String> urls) {
+
+        if(started) {
+            return;
+        }
+        started = true;
+
+        if(!NetworkMonitor.isOnline()) {
+            Log.d(TAG, "Offline, not pre-warming connections");
+            return;
+        }
+
+        // one request per scheme + host + port
+        Map<String, HttpUrl> origins = new LinkedHashMap<>();
+        for(String url : urls) {
+            HttpUrl httpUrl = HttpUrl.parse(url);
+            if(httpUrl != null) {
+                origins.putIfAbsent(httpUrl.scheme() + "://" + httpUrl.host() + ":" + httpUrl.port(),
+                        httpUrl.newBuilder().encodedPath("/").query(null).fragment(null).build());
+            }
+        }
+
+        // shares the connection pool (and dispatcher) of the application wide client
+        OkHttpClient client = HTTPClient.getOkHttpClient().newBuilder()
+                .followRedirects(false)
+                .cookieJar(CookieJar.NO_COOKIES)
+                .eventListener(EventListener.NONE)
+                .callTimeout(PREWARM_TIMEOUT, TimeUnit.SECONDS)
+                .build();
+
+        for(HttpUrl origin : origins.values()) {
+
+            Request request = new Request.Builder()
+                    .url(origin)
+                    .head()
+                    .header("User-Agent", "NUPlayer/" + BuildConfig.VERSION_NAME)
+                    .build();
+
+            long startTime = System.nanoTime();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    record(origin.host(), startTime, response.protocol().toString());
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    record(origin.host(), startTime, "failed: " + e.getMessage());
+                }
+            });
+        }
+
+        Log.d(TAG, "Pre-warming connections to " + origins.size() + " hosts");
+    }
+
+    private static void record(String host, long startTime, String outcome) {
+        String result = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms " + outcome;
+        Log.d(TAG, "Pre-warmed " + host + " in " + result);
+        RequestMetrics.recordPrewarm(host, result);
+    }
+}
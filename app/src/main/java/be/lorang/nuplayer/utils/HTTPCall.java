@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import java.util.concurrent.CompletableFuture;
+
+import okhttp3.Call;
+
+/*
+ * Handle of an asynchronous HTTPClient request
+ *
+ * cancel() aborts the request wherever it is: before it started, while waiting on the network
+ * (the OkHttp call is cancelled so the socket read and streaming JSON parse stop) or before the
+ * callback would be called. A cancelled request never calls its callback, await() returns
+ * a response with isCancelled() set.
+ */
+public final class HTTPCall {
+
+    private final Object tag;
+    private final long startTime = System.nanoTime();
+    private final CompletableFuture<HTTPResponse> future = new CompletableFuture<>();
+
+    private volatile boolean cancelled = false;
+    private Call networkCall;
+
+    HTTPCall(Object tag) {
+        this.tag = tag;
+    }
+
+    public Object getTag() {
+        return tag;
+    }
+
+    public void cancel() {
+        synchronized (this) {
+            if(cancelled || future.isDone()) {
+                return;
+            }
+            cancelled = true;
+            if(networkCall != null) {
+                networkCall.cancel();
+            }
+        }
+        future.complete(HTTPResponse.cancelled((System.nanoTime() - startTime) / 1000000));
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    // Block until the request finished or got cancelled
+    public HTTPResponse await() {
+        return future.join();
+    }
+
+    // Link the OkHttp call doing the actual work, returns false (and cancels it) if we're already cancelled
+    synchronized boolean attach(Call call) {
+        if(cancelled) {
+            call.cancel();
+            return false;
+        }
+        networkCall = call;
+        return true;
+    }
+
+    // Returns false if the response came too late, the request got cancelled in the meantime
+    synchronized boolean complete(HTTPResponse response) {
+        if(cancelled) {
+            return false;
+        }
+        return future.complete(response);
+    }
+}
@@ -18,40 +18,62 @@ package be.lorang.nuplayer.utils;
 
 /*
  * Helper class for all HTTP requests
+ *
+ * Every request returns an immutable HTTPResponse, HTTPClient keeps no per-request state so a
+ * single instance can be shared between threads and used for parallel requests.
+ *
+ * The *Async variants return a HTTPCall handle right away, requests can be cancelled through
+ * the handle or by tag (cancelAll) when their result isn't needed anymore.
  */
 
-import android.os.Build;
 import android.util.Log;
 
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FilenameFilter;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InputStream;
 import java.net.CookieHandler;
 import java.net.CookieManager;
-import java.net.HttpCookie;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import be.lorang.nuplayer.BuildConfig;
-import be.lorang.nuplayer.R;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+import okhttp3.JavaNetCookieJar;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.brotli.BrotliInterceptor;
 
 import static be.lorang.nuplayer.services.CatalogService.programTypes;
 
@@ -59,67 +81,428 @@ public class HTTPClient {
 
     private static String TAG = "HTTPClient";
 
-    private HttpsURLConnection urlConnection ;
-    private BufferedReader reader;
-    private OutputStream writer;
-    private JSONObject returnObject;
-    private int responseCode;
-    private String responseMessage;
+    // Intent extra with the tag a service should use for its (cancellable) requests
+    public static final String REQUEST_TAG = "REQUEST_TAG";
+
+    // Intent extra with the name of the RequestPriority a service should use for its requests
+    public static final String REQUEST_PRIORITY = "REQUEST_PRIORITY";
+
+    // Connection pool settings of the shared OkHttpClient, idle connections to search7.vrt.be,
+    // www.vrt.be, video-user-data.vrt.be, ... are kept alive so subsequent requests skip the TLS handshake
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int KEEP_ALIVE_DURATION = 5;
+
+    // Default disk budget of all cache entries together, see setMaxCacheSize()
+    private static final long DEFAULT_MAX_CACHE_SIZE = 32 * 1024 * 1024;
+
+    // Expired entries with an ETag / Last-Modified are kept this long (ms) for conditional revalidation
+    private static final long REVALIDATION_WINDOW = TimeUnit.DAYS.toMillis(7);
+
+    // Background refreshes of stale cache entries (stale-while-revalidate), one refresh per url at a time,
+    // ordered by the priority of their CachePolicy
+    private static final ExecutorService refreshExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>());
+    private static final Set<String> refreshingUrls = ConcurrentHashMap.newKeySet();
+
+    // Responses served stale while offline, refreshed once the network is back (see NetworkMonitor)
+    private static final int MAX_PENDING_RESYNCS = 128;
+    private static final ConcurrentHashMap<String, PendingResync> pendingResyncs = new ConcurrentHashMap<>();
+
+    // Cacheable GET requests currently on the network by cache key, concurrent requests for the
+    // same url wait for the first one instead of downloading (and caching) it again, unless it
+    // has a lower priority than theirs
+    private static final ConcurrentHashMap<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+    // waiters check for their own cancellation within this interval
+    private static final long IN_FLIGHT_WAIT_INTERVAL = 250;
+
+    // Asynchronous requests (getRequestAsync, getCachedRequestAsync) and their cancellation
+    private static final int ASYNC_THREADS = 4;
+    private static final int MAX_CANCELLED_TAGS = 64;
+    private static final ExecutorService asyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS);
+    private static final Set<HTTPCall> activeCalls = ConcurrentHashMap.newKeySet();
+    private static final Map<Object, Boolean> cancelledTags = Collections.synchronizedMap(
+            new LinkedHashMap<Object, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+                    return size() > MAX_CANCELLED_TAGS;
+                }
+            });
+
+    // Retries of idempotent (GET) requests on network errors, 408, 429 and 5xx responses with
+    // exponential backoff and jitter, all attempts together have to fit in RETRY_DEADLINE
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY = 250;
+    private static final long RETRY_MAX_DELAY = 2000;
+    private static final long RETRY_DEADLINE = TimeUnit.SECONDS.toMillis(10);
+
+    // Concurrency per host and RequestPriority, playback requests go first and background work yields
+    private static final RequestScheduler requestScheduler = new RequestScheduler();
+
+    // Circuit breaker per host, requests to an unhealthy host fail fast (cached data is used if available)
+    private static final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    // Size accounting / LRU eviction of the cache entries with a quota per CachePolicy
+    private static final CacheBudget cacheBudget = new CacheBudget(DEFAULT_MAX_CACHE_SIZE);
+
+    // Writes cache entries to the CacheStore in the background, off the request path
+    private static final CacheWriter cacheWriter = new CacheWriter(cacheBudget);
+
+    // Default decoder of response bodies: org.json trees, JSON arrays wrapped in "data"
+    private static final ResponseDecoder<JSONObject> JSON_DECODER = JSONStreamParser::parse;
+
+    // Application wide OkHttpClient, all HTTPClient instances share its connection pool
+    private static OkHttpClient okHttpClient;
 
-    public HTTPClient() {}
+    // In-memory tier of parsed responses in front of the CacheStore, bounded to 1/16th of the heap
+    private static final ResponseMemoryCache memoryCache =
+            new ResponseMemoryCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
 
     /**
-     * Perform GET/POST request
+     * Callback of the asynchronous request methods
+     */
+    public interface ResponseCallback {
+        void onResponse(HTTPResponse response);
+    }
+
+    /**
+     * Listener for getCachedRequest() calls that accept stale responses, called from a background
+     * thread once fresher data than the returned stale copy has been downloaded and cached
+     */
+    public interface CacheUpdateListener {
+        // body as decoded by the ResponseDecoder of the request, a JSONObject by default
+        void onCacheUpdated(String url, Object body);
+    }
+
+    // Result of a coalesced request and the priority it's scheduled with
+    private static final class InFlightRequest {
+        private final CompletableFuture<HTTPResponse> future = new CompletableFuture<>();
+        private final RequestPriority priority;
+
+        private InFlightRequest(RequestPriority priority) {
+            this.priority = priority;
+        }
+    }
+
+    // A response body the ResponseDecoder couldn't make sense of: the server answered, retrying gets the same body
+    private static final class DecodeException extends IOException {
+        private DecodeException(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    // Body stream that remembers if reading from the network failed, to tell those apart from malformed bodies
+    private static final class NetworkInputStream extends FilterInputStream {
+        private IOException failure;
+
+        private NetworkInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    // Parameters of a getCachedRequest() call to repeat when the network is back
+    private static class PendingResync {
+        private final File cacheDir;
+        private final int ttl;
+        private final int maxStale;
+        private final CacheUpdateListener listener;
+        private final ResponseDecoder<?> decoder;
+
+        private PendingResync(File cacheDir, int ttl, int maxStale, CacheUpdateListener listener, ResponseDecoder<?> decoder) {
+            this.cacheDir = cacheDir;
+            this.ttl = ttl;
+            this.maxStale = maxStale;
+            this.listener = listener;
+            this.decoder = decoder;
+        }
+    }
+
+    // Priority of all requests of this instance
+    private final RequestPriority priority;
+
+    public HTTPClient() {
+        this(RequestPriority.INTERACTIVE);
+    }
+
+    public HTTPClient(RequestPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the application wide OkHttpClient
+     *
+     * Connections are pooled and kept alive, HTTP/2 is negotiated when the server supports it
+     * so multiple requests to the same host are multiplexed over a single connection.
+     * Responses are requested and transparently decoded with brotli or gzip compression.
+     * Timings and sizes of every call are recorded in RequestMetrics.
+     *
+     * Use newBuilder() on the returned client to customize it (e.g. a different CookieJar)
+     * while still sharing the connection pool and dispatcher.
+     *
+     * @return shared OkHttpClient
+     */
+    public static synchronized OkHttpClient getOkHttpClient() {
+
+        if(okHttpClient == null) {
+            okHttpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .cookieJar(new DefaultCookieJar())
+                    .addInterceptor(BrotliInterceptor.INSTANCE)
+                    .eventListenerFactory(MetricsEventListener.FACTORY)
+                    .followRedirects(true)
+                    .followSslRedirects(true)
+                    .build();
+        }
+
+        return okHttpClient;
+    }
+
+    /**
+     * Perform GET/POST/DELETE request
      *
      * Cookies are stored automatically in the global cookieManager
-     * The HTTP response code (200, 404, etc) is stored in returnCode
-     * The HTTP response message is stored in returnMessage
+     * The HTTP response code (200, 404, etc), message, headers and decoded body are returned
+     * in an immutable HTTPResponse, no state is kept in this HTTPClient
      *
-     * All of them can be queried via the respective get methods
+     * Concurrent cacheable GET requests for the same URL result in a single network call,
+     * all callers get the same response. A request doesn't wait for one of a lower priority, it
+     * downloads the URL itself. Responses decoded by a ResponseDecoder other than the default
+     * JSON one aren't shared, the decoded value belongs to its caller.
      *
      * @param urlString - String: URL
      * @param requestMethod - String: request method
-     *                      (GET/POST)
+     *                      (GET/POST/DELETE)
      * @param contentType - String: content type
      *                    (application/json, application/x-www-form-urlencoded)
      * @param postData - JSONObject: data for POST request
      * @param headers - HashMap: additional headers to set
      * @param cacheDir - File: File object pointing to cache dir (getContext().getCacheDir())
      * @param ttl - Integer: Time To Live (ttl) for cached request in minutes
+     * @param maxStale - Integer: minutes the cached request may still be served stale after ttl
+     * @param decoder - ResponseDecoder: decodes the response body
+     * @param call - HTTPCall: handle to check for / propagate cancellation, null for blocking requests
      *
-     * @return JSONObject with result
+     * @return HTTPResponse with result
      */
-    private JSONObject doRequest(String urlString, String requestMethod, String contentType, JSONObject postData, Map<String, String> headers, File cacheDir, int ttl) throws IOException  {
+    private HTTPResponse doRequest(String urlString, String requestMethod, String contentType, JSONObject postData, Map<String, String> headers, File cacheDir, int ttl, int maxStale, ResponseDecoder<?> decoder, HTTPCall call) {
+
+        // only plain cacheable GETs are coalesced, conditional requests depend on the caller's cache entry
+        if(cacheDir == null || !requestMethod.equals("GET") || headers != null || decoder != JSON_DECODER) {
+            return executeRequest(urlString, requestMethod, contentType, postData, headers, cacheDir, ttl, maxStale, decoder, call);
+        }
 
+        String cacheKey = getCacheKey(urlString);
+        InFlightRequest request = new InFlightRequest(priority);
+        InFlightRequest inFlight = inFlightRequests.putIfAbsent(cacheKey, request);
+
+        // same url is already being downloaded at the same or a higher priority, share its result
+        if(inFlight != null && !priority.isHigherThan(inFlight.priority)) {
+            Log.d(TAG, "Waiting for in-flight request of " + urlString);
+            HTTPResponse sharedResponse = awaitInFlight(inFlight.future, call);
+            if(sharedResponse == null) {
+                Log.d(TAG, "Request cancelled while waiting for in-flight request: " + urlString);
+                return HTTPResponse.cancelled(0);
+            }
+            if(!sharedResponse.isCancelled()) {
+                return sharedResponse.withSource(HTTPResponse.Source.SHARED);
+            }
+
+            // the request we waited for got cancelled by its owner, we still need the data
+            return doRequest(urlString, requestMethod, contentType, postData, headers, cacheDir, ttl, maxStale, decoder, call);
+        }
+
+        // a lower priority download of the url would hold us up in its scheduler queue, download
+        // it ourselves and let later requests wait for us instead
+        if(inFlight != null) {
+            Log.d(TAG, "Not waiting for " + inFlight.priority + " in-flight request of " + urlString);
+            inFlightRequests.put(cacheKey, request);
+        }
+
+        HTTPResponse response = null;
         try {
+            response = executeRequest(urlString, requestMethod, contentType, postData, headers, cacheDir, ttl, maxStale, decoder, call);
+        } finally {
+            inFlightRequests.remove(cacheKey, request);
+            request.future.complete(response != null ? response : HTTPResponse.failed("Request aborted", 0));
+        }
+
+        return response;
+    }
+
+    // Wait for a request this one is coalesced onto, null if our own call got cancelled (or
+    // the thread interrupted) in the meantime. The in-flight request itself keeps going.
+    private static HTTPResponse awaitInFlight(CompletableFuture<HTTPResponse> inFlight, HTTPCall call) {
+        while(true) {
+            if(call != null && call.isCancelled()) {
+                return null;
+            }
+            try {
+                return inFlight.get(IN_FLIGHT_WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // still downloading, check for cancellation again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return HTTPResponse.failed(e.getMessage(), 0);
+            }
+        }
+    }
+
+    /*
+     * Execute a request on the network, see doRequest()
+     *
+     * Every attempt waits for a slot of the RequestScheduler first, so requests of a higher priority to the
+     * same host go first. Requests fail right away while offline or when the host has an open circuit breaker. Failed GET requests are
+     * retried up to MAX_ATTEMPTS times with exponential backoff and jitter as long as the next
+     * attempt still starts within RETRY_DEADLINE, other methods aren't idempotent and are never retried.
+     */
+    private HTTPResponse executeRequest(String urlString, String requestMethod, String contentType, JSONObject postData, Map<String, String> headers, File cacheDir, int ttl, int maxStale, ResponseDecoder<?> decoder, HTTPCall call) {
+
+        long startTime = System.nanoTime();
+        String host = getHost(urlString);
+        CircuitBreaker circuitBreaker = getCircuitBreaker(host);
+        boolean idempotent = requestMethod.equals("GET");
+
+        for(int attempt = 1; ; attempt++) {
 
-            java.net.URL url = new java.net.URL(urlString);
+            if(!NetworkMonitor.isOnline()) {
+                Log.d(TAG, "Offline, not requesting " + urlString);
+                return HTTPResponse.failed("No network connection", getElapsedMillis(startTime));
+            }
+
+            if(!circuitBreaker.allowRequest()) {
+                Log.d(TAG, "Circuit breaker open for " + host + ", not requesting " + urlString);
+                return HTTPResponse.failed("Circuit breaker open for " + host, getElapsedMillis(startTime));
+            }
 
-            urlConnection = (HttpsURLConnection) url.openConnection();
-            urlConnection.setRequestProperty("Accept", "*/*");
-            urlConnection.setRequestProperty("User-Agent", "NUPlayer/" + BuildConfig.VERSION_NAME);
-            urlConnection.setFollowRedirects(true);
+            long queueStartTime = System.nanoTime();
+            if(!requestScheduler.acquire(host, priority, call)) {
+                return HTTPResponse.cancelled(getElapsedMillis(startTime));
+            }
+            RequestMetrics.recordQueueWait(urlString, getElapsedMillis(queueStartTime));
+
+            HTTPResponse response;
+            try {
+                response = executeAttempt(urlString, requestMethod, contentType, postData, headers, cacheDir, ttl, maxStale, decoder, call, startTime);
+            } finally {
+                requestScheduler.release(host, priority);
+            }
+
+            if(response.isCancelled()) {
+                return response;
+            }
+
+            if(!isRetryable(response)) {
+                circuitBreaker.recordSuccess();
+                return response;
+            }
 
-            // add request method (if set)
-            if(requestMethod != null) {
-                Log.d(TAG, "Setting requestMethod: " + requestMethod);
-                urlConnection.setRequestMethod(requestMethod);
+            // lost the network halfway, that's not the host's fault and retrying won't help
+            if(!NetworkMonitor.isOnline()) {
+                return response;
             }
 
+            circuitBreaker.recordFailure();
+
+            long delay = getRetryDelay(attempt);
+            if(!idempotent || attempt >= MAX_ATTEMPTS || getElapsedMillis(startTime) + delay > RETRY_DEADLINE) {
+                return response;
+            }
+
+            Log.d(TAG, "Attempt " + attempt + " of " + urlString + " failed (" + response + "), retrying in " + delay + "ms");
+            RequestMetrics.recordRetry(urlString);
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+
+            if(call != null && call.isCancelled()) {
+                return HTTPResponse.cancelled(getElapsedMillis(startTime));
+            }
+        }
+    }
+
+    // Network errors (code 0), timeouts, throttling and server errors are worth another try
+    private static boolean isRetryable(HTTPResponse response) {
+        int code = response.getCode();
+        return code == 0 || code == 408 || code == 429 || code >= 500;
+    }
+
+    // Exponential backoff with "equal jitter": half of the delay is fixed, the other half random
+    private static long getRetryDelay(int attempt) {
+        long delay = Math.min(RETRY_MAX_DELAY, RETRY_BASE_DELAY << (attempt - 1));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static String getHost(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl != null ? httpUrl.host() : "";
+    }
+
+    private static CircuitBreaker getCircuitBreaker(String host) {
+        return circuitBreakers.computeIfAbsent(host, CircuitBreaker::new);
+    }
+
+    // Execute a single attempt of a request, startTime is the start of the first attempt
+    private HTTPResponse executeAttempt(String urlString, String requestMethod, String contentType, JSONObject postData, Map<String, String> headers, File cacheDir, int ttl, int maxStale, ResponseDecoder<?> decoder, HTTPCall call, long startTime) {
+
+        try {
+
+            Request.Builder requestBuilder = new Request.Builder()
+                    .url(urlString)
+                    .header("Accept", "*/*")
+                    .header("User-Agent", "NUPlayer/" + BuildConfig.VERSION_NAME);
+
             // add headers (if any)
             if(headers != null) {
                 for (Map.Entry<String, String> header : headers.entrySet()) {
                     Log.d(TAG, "Adding header: " + header.getKey() + " with value: " + header.getValue());
-                    urlConnection.addRequestProperty(header.getKey(), header.getValue());
+                    requestBuilder.addHeader(header.getKey(), header.getValue());
                 }
             }
 
             // set content type header (if set)
             if(contentType != null) {
                 Log.d(TAG, "Setting contentType: " + contentType);
-                urlConnection.setRequestProperty("Content-Type", contentType);
+                requestBuilder.header("Content-Type", contentType);
             }
 
+            Log.d(TAG, "Setting requestMethod: " + requestMethod);
+
             if(requestMethod.equals("POST")) {
 
                 // transform JSON postData to an URL encoded string if type is of x-www-form-urlencoded
@@ -142,203 +525,649 @@ public class HTTPClient {
                 }
 
                 byte[] input = data.getBytes(StandardCharsets.UTF_8);
+                requestBuilder.post(RequestBody.create(input, MediaType.parse(contentType)));
+
+            } else if(requestMethod.equals("DELETE")) {
+                requestBuilder.delete();
+            }
 
-                urlConnection.setRequestProperty("Content-Length", String.valueOf(input.length));
-                urlConnection.setDoOutput(true);
+            boolean writeCache = cacheDir != null && requestMethod.equals("GET");
 
-                // write POST body
-                writer = urlConnection.getOutputStream();
-                writer.write(input, 0, input.length);
-                writer.flush();
-                writer.close();
+            Call networkCall = getOkHttpClient().newCall(requestBuilder.build());
+            if(call != null && !call.attach(networkCall)) {
+                return HTTPResponse.cancelled(getElapsedMillis(startTime));
             }
 
-            // set return code and message
-            responseCode = urlConnection.getResponseCode();
-            responseMessage = urlConnection.getResponseMessage();
+            try (Response response = networkCall.execute()) {
 
-            // read response
-            StringBuilder sb = new StringBuilder();
-            try {
-                reader = new BufferedReader(new InputStreamReader(urlConnection.getInputStream(), StandardCharsets.UTF_8));
-            } catch(IOException ex) {
-                reader = new BufferedReader(new InputStreamReader(urlConnection.getErrorStream(), StandardCharsets.UTF_8));
+                int responseCode = response.code();
+
+                // keep a copy of the raw body while decoding if it should be cached
+                InputStream bodyStream = response.body().byteStream();
+                ByteArrayOutputStream bodyCopy = null;
+                if(writeCache && responseCode == 200) {
+                    long contentLength = response.body().contentLength();
+                    bodyCopy = new ByteArrayOutputStream(contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 8192);
+                    bodyStream = new TeeInputStream(bodyStream, bodyCopy);
+                }
+
+                // decode response straight from the socket, a malformed body isn't retried and
+                // doesn't count against the circuit breaker unless the status code says so
+                Object body;
+                try {
+                    body = decode(decoder, bodyStream);
+                } catch (DecodeException e) {
+                    Log.d(TAG, "Could not decode response of " + urlString + ": " + e.getMessage());
+                    return new HTTPResponse(responseCode, "Malformed response: " + e.getMessage(), response.headers(), null,
+                            getElapsedMillis(startTime), HTTPResponse.Source.NETWORK);
+                }
+
+                // Don't bother caching a response nobody is waiting for anymore
+                if(call != null && call.isCancelled()) {
+                    return HTTPResponse.cancelled(getElapsedMillis(startTime));
+                }
+
+                // Write result to cache for later use
+                if(bodyCopy != null && body != null) {
+                    ((TeeInputStream) bodyStream).drain();
+                    writeCacheEntry(cacheDir, urlString, ttl, maxStale, bodyCopy.toByteArray(), body,
+                            response.header("ETag"), response.header("Last-Modified"));
+                }
+
+                return new HTTPResponse(responseCode, response.message(), response.headers(), body,
+                        getElapsedMillis(startTime), HTTPResponse.Source.NETWORK);
             }
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+
+        } catch (Exception e) {
+            if(call != null && call.isCancelled()) {
+                Log.d(TAG, "Request cancelled: " + urlString);
+                return HTTPResponse.cancelled(getElapsedMillis(startTime));
             }
+            Log.d(TAG, "Exception caught: " + e.getMessage());
+            e.printStackTrace();
+            return HTTPResponse.failed(e.getMessage(), getElapsedMillis(startTime));
+        }
+    }
+
+    // Decode a response body, anything the decoder throws is a DecodeException unless reading the network failed
+    private static Object decode(ResponseDecoder<?> decoder, InputStream bodyStream) throws IOException {
+        NetworkInputStream networkStream = new NetworkInputStream(bodyStream);
+        try {
+            return decoder.decode(networkStream);
+        } catch (Exception e) {
+            if(networkStream.failure != null) {
+                throw networkStream.failure;
+            }
+            throw new DecodeException(e);
+        }
+    }
 
-            // parse response to JSON
-            String json = sb.toString();
+    // Cache a response: the memory tier right away (JSON trees only), the disk through the CacheWriter
+    private static void writeCacheEntry(File cacheDir, String url, int ttl, int maxStale, byte[] body, Object decodedBody,
+                                        String eTag, String lastModified) {
 
-            // the VRT.NU API sometimes returns JSONObjects (e.g. Episode lists)
-            // but sometimes also JSONArrays (e.g. Catalog)
-            // If it's an array add it to a single JSONObject called "data"
+        long timestampCacheExpires = System.currentTimeMillis() + (Long.valueOf(ttl) * 60 * 1000);
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
 
-            Object jsonTestObj = null;
-            try {
-                jsonTestObj = new JSONTokener(json).nextValue();
-            } catch(JSONException e) {
-                // ignore exception as we're testing what the Object would be
+        if(cachePolicy.isMemoryCached() && decodedBody instanceof JSONObject) {
+            memoryCache.put(url, (JSONObject) decodedBody, timestampCacheExpires, body.length);
+        }
+
+        // without validators an expired entry is simply downloaded again
+        if(cachePolicy.getRevalidation() == CachePolicy.Revalidation.NONE) {
+            eTag = null;
+            lastModified = null;
+        }
+
+        Log.d(TAG, "Writing " + body.length + " bytes to cache for " + url);
+
+        cacheWriter.write(cacheDir, getCacheKey(url), body, timestampCacheExpires, eTag, lastModified,
+                RequestTemplate.fromUrl(url), cachePolicy.isCompressed(), maxStale);
+    }
+
+    private static long getElapsedMillis(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    public HTTPResponse getRequest(String url) {
+        return doRequest(url, "GET", null, null, null, null, 0, 0, JSON_DECODER, null);
+    }
+
+    public HTTPResponse getRequest(File cacheDir, String url, int ttl) {
+        return doRequest(url, "GET", null, null, null, cacheDir, ttl, 0, JSON_DECODER, null);
+    }
+
+    public HTTPResponse getRequest(String url, Map<String, String> headers) {
+        return doRequest(url, "GET", null, null, headers, null, 0, 0, JSON_DECODER, null);
+    }
+
+    public HTTPResponse postRequest(String url, String contentType, JSONObject postData) {
+        return doRequest(url, "POST", contentType, postData, null, null, 0, 0, JSON_DECODER, null);
+    }
+
+    public HTTPResponse postRequest(String url, String contentType, JSONObject postData, Map<String, String> headers) {
+        return doRequest(url, "POST", contentType, postData, headers, null, 0, 0, JSON_DECODER, null);
+    }
+
+    public HTTPResponse deleteRequest(String url, Map<String, String> headers) {
+        return doRequest(url, "DELETE", null, null, headers, null, 0, 0, JSON_DECODER, null);
+    }
+
+    // Return cached responses, ttl and everything else comes from the CachePolicy of url
+    public HTTPResponse getCachedRequest(File cacheDir, String url) {
+        return getCachedRequest(cacheDir, url, (CacheUpdateListener) null);
+    }
+
+    /**
+     * Return cached responses, stale-while-revalidate
+     *
+     * Caching is done according to the CachePolicy of url. An expired cache entry that is at most
+     * max-stale minutes past its ttl is returned immediately and refreshed in the background,
+     * listener is called when the refresh brought in new data. Entries older than that are
+     * fetched synchronously. Without a listener there's no max-stale, the caller would never
+     * learn about the refresh and keep showing the stale copy.
+     *
+     * @param cacheDir - File: File object pointing to cache dir (getContext().getCacheDir())
+     * @param url - String: URL
+     * @param listener - CacheUpdateListener: called after a background refresh, can be null
+     *
+     * @return HTTPResponse with result
+     */
+    public HTTPResponse getCachedRequest(File cacheDir, String url, CacheUpdateListener listener) {
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
+        return getCachedRequest(cacheDir, url, cachePolicy.getTtl(), getMaxStale(cachePolicy, listener), listener, JSON_DECODER, null);
+    }
+
+    /**
+     * Return cached responses decoded by decoder, see getCachedRequest(cacheDir, url, listener)
+     *
+     * The body is decoded straight from the network or the cache entry, get it with
+     * HTTPResponse.getDecodedBody(). Decoded bodies skip the memory tier.
+     *
+     * @param cacheDir - File: File object pointing to cache dir (getContext().getCacheDir())
+     * @param url - String: URL
+     * @param decoder - ResponseDecoder: decodes the response body
+     *
+     * @return HTTPResponse with result
+     */
+    public HTTPResponse getCachedRequest(File cacheDir, String url, ResponseDecoder<?> decoder) {
+        return getCachedRequest(cacheDir, url, decoder, null);
+    }
+
+    // getCachedRequest(cacheDir, url, decoder) with a CacheUpdateListener for stale responses
+    public HTTPResponse getCachedRequest(File cacheDir, String url, ResponseDecoder<?> decoder, CacheUpdateListener listener) {
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
+        return getCachedRequest(cacheDir, url, cachePolicy.getTtl(), getMaxStale(cachePolicy, listener), listener, decoder, null);
+    }
+
+    private HTTPResponse getCachedRequest(File cacheDir, String url, int ttl, int maxStale, CacheUpdateListener listener,
+                                          ResponseDecoder<?> decoder, HTTPCall call) {
+        HTTPResponse response = lookupCachedRequest(cacheDir, url, ttl, maxStale, listener, decoder, call);
+        RequestMetrics.recordCacheResult(url, response);
+        return response;
+    }
+
+    private HTTPResponse lookupCachedRequest(File cacheDir, String url, int ttl, int maxStale, CacheUpdateListener listener,
+                                             ResponseDecoder<?> decoder, HTTPCall call) {
+
+        long startTime = System.nanoTime();
+
+        // check memory tier first, entries share the expiry timestamp of their cache file
+        JSONObject memoryObject = decoder == JSON_DECODER ? memoryCache.get(url) : null;
+        if(memoryObject != null) {
+            Log.d(TAG, "Returning object from memory cache for " + url);
+            return HTTPResponse.fromCache(memoryObject, getElapsedMillis(startTime), HTTPResponse.Source.MEMORY_CACHE);
+        }
+
+        CacheEntry cacheEntry = null;
+        try {
+            cacheEntry = readCacheEntry(cacheDir, url);
+
+            // check if cache entry still valid
+            if(cacheEntry != null && !cacheEntry.isExpired()) {
+                long parseStart = System.nanoTime();
+                Object object = decoder.decode(cacheEntry.openBody());
+                RequestMetrics.recordParse(url, getElapsedMillis(parseStart));
+                if(object != null) {
+                    Log.d(TAG, "Returning cached object - Cache still valid until " + Instant.ofEpochMilli(cacheEntry.getTimestampCacheExpires()) + " result for " + url);
+                    if(CachePolicy.forUrl(url).isMemoryCached() && object instanceof JSONObject) {
+                        memoryCache.put(url, (JSONObject) object, cacheEntry.getTimestampCacheExpires(), cacheEntry.getContentLength());
+                    }
+                    return HTTPResponse.fromCache(object, getElapsedMillis(startTime), HTTPResponse.Source.DISK_CACHE);
+                }
             }
 
-            if (jsonTestObj instanceof JSONObject) {
-                returnObject = new JSONObject(json);
-            } else if(jsonTestObj instanceof JSONArray) {
-                returnObject = new JSONObject();
-                JSONArray jsonArr = new JSONArray(json);
-                returnObject.put("data", jsonArr);
+            // expired but still within the max-stale window, return it and refresh in the background
+            if(cacheEntry != null && isServableStale(cacheEntry, maxStale)) {
+                Object object = decoder.decode(cacheEntry.openBody());
+                if(object != null) {
+                    Log.d(TAG, "Returning stale cached object - Cache expired at " + Instant.ofEpochMilli(cacheEntry.getTimestampCacheExpires()) + " result for " + url);
+                    refreshInBackground(cacheDir, url, ttl, maxStale, cacheEntry, listener, decoder);
+                    return HTTPResponse.fromCache(object, getElapsedMillis(startTime), HTTPResponse.Source.STALE_CACHE);
+                }
             }
 
-            // Write result to cache for later use
-            if(cacheDir != null && requestMethod.equals("GET") && responseCode == 200) {
+            // no network, any copy beats an error, it's refreshed when the network is back
+            if(cacheEntry != null && !NetworkMonitor.isOnline()) {
+                Object object = decoder.decode(cacheEntry.openBody());
+                if(object != null) {
+                    Log.d(TAG, "Offline, returning cached object expired at " + Instant.ofEpochMilli(cacheEntry.getTimestampCacheExpires()) + " for " + url);
+                    refreshInBackground(cacheDir, url, ttl, maxStale, cacheEntry, listener, decoder);
+                    return HTTPResponse.fromCache(object, getElapsedMillis(startTime), HTTPResponse.Source.STALE_CACHE);
+                }
+            }
 
-                // Setup cache object as JSON with current timestamp
-                JSONObject cacheObject = new JSONObject();
-                cacheObject.put("timestampCacheExpires", (System.currentTimeMillis() + (Long.valueOf(ttl) * 60 * 1000)));
-                cacheObject.put("object", returnObject.toString());
+        } catch(Exception e) {
+            Log.d(TAG, "Could not read cache entry for " + url + ": " + e.getMessage());
+            cacheEntry = null;
+        }
 
-                Log.d(TAG, "Writing to cache: " + cacheObject.toString().substring(0,100));
+        if(call != null && call.isCancelled()) {
+            return HTTPResponse.cancelled(getElapsedMillis(startTime));
+        }
+
+        // expired but the server gave us validators, ask if our copy is still up to date
+        HTTPResponse response;
+        if(cacheEntry != null && cacheEntry.hasValidators()) {
+            response = revalidateCachedRequest(cacheDir, url, ttl, maxStale, cacheEntry, decoder, call);
+        } else {
+            response = doRequest(url, "GET", null, null, null, cacheDir, ttl, maxStale, decoder, call);
+        }
 
-                String fileName = getCacheFileName(urlString);
-                File file = new File(cacheDir, fileName);
-                Writer output = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(file), StandardCharsets.UTF_8));
-                output.write(cacheObject.toString());
-                output.close();
+        // host is down or unreachable (circuit breaker open), an outdated copy beats no data at all
+        if(cacheEntry != null && !response.isCancelled() && isRetryable(response)) {
+            try {
+                Object object = decoder.decode(cacheEntry.openBody());
+                if(object != null) {
+                    Log.d(TAG, "Request failed (" + response + "), falling back to expired cache entry for " + url);
+                    return HTTPResponse.fromCache(object, getElapsedMillis(startTime), HTTPResponse.Source.STALE_CACHE);
+                }
+            } catch(Exception e) {
+                Log.d(TAG, "Could not read cache entry for " + url + ": " + e.getMessage());
             }
+        }
 
-        } catch (Exception e) {
-            Log.d(TAG, "Exception caught: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            urlConnection.disconnect();
+        return response;
+    }
+
+    // max-stale of the CachePolicy for callers that get told about the background refresh, 0 otherwise
+    private static int getMaxStale(CachePolicy cachePolicy, CacheUpdateListener listener) {
+        return listener != null ? cachePolicy.getMaxStale() : 0;
+    }
+
+    private static boolean isServableStale(CacheEntry cacheEntry, int maxStale) {
+        return maxStale > 0 &&
+                System.currentTimeMillis() < cacheEntry.getTimestampCacheExpires() + TimeUnit.MINUTES.toMillis(maxStale);
+    }
+
+    /*
+     * Refresh a stale cache entry on the refresh thread, the listener is only called when the
+     * server returned new data (not on 304 Not Modified or errors). While offline the refresh
+     * is postponed until the network is back. cacheEntry can be null if it got evicted meanwhile.
+     * Refreshes run at PREFETCH priority, or lower if the request they refresh had a lower priority.
+     */
+    private void refreshInBackground(File cacheDir, String url, int ttl, int maxStale, CacheEntry cacheEntry,
+                                     CacheUpdateListener listener, ResponseDecoder<?> decoder) {
+
+        if(!NetworkMonitor.isOnline()) {
+            if(pendingResyncs.size() < MAX_PENDING_RESYNCS) {
+                pendingResyncs.put(url, new PendingResync(cacheDir, ttl, maxStale, listener, decoder));
+            }
+            return;
         }
 
-        return returnObject;
+        // a refresh for this url is already queued or running
+        if(!refreshingUrls.add(url)) {
+            return;
+        }
+
+        HTTPClient refreshClient = RequestPriority.PREFETCH.isHigherThan(priority) ? this : new HTTPClient(RequestPriority.PREFETCH);
+
+        refreshExecutor.execute(new PrioritizedTask(CachePolicy.forUrl(url).getPriority(), () -> {
+            try {
+                HTTPResponse response;
+                if(cacheEntry != null && cacheEntry.hasValidators()) {
+                    response = refreshClient.revalidateCachedRequest(cacheDir, url, ttl, maxStale, cacheEntry, decoder, null);
+                } else {
+                    response = refreshClient.doRequest(url, "GET", null, null, null, cacheDir, ttl, maxStale, decoder, null);
+                }
+
+                if(response.getCode() != 200 || response.getDecodedBody() == null) {
+                    Log.d(TAG, "Background refresh of " + url + " failed: " + response.getCode() + " " + response.getMessage());
+                } else if(response.getSource() != HTTPResponse.Source.REVALIDATED && listener != null) {
+                    listener.onCacheUpdated(url, response.getDecodedBody());
+                }
+
+            } catch (Exception e) {
+                Log.d(TAG, "Background refresh of " + url + " failed: " + e.getMessage());
+            } finally {
+                refreshingUrls.remove(url);
+            }
+        }));
     }
 
-    public JSONObject getRequest(String url) throws IOException{
-        return doRequest(url, "GET", null, null, null, null, 0);
+    /*
+     * Conditional GET for an expired cache entry using If-None-Match / If-Modified-Since
+     *
+     * On 304 Not Modified only the expiry of the entry is extended and the stored body is returned,
+     * any other response is handled (and cached) as a regular request.
+     */
+    private HTTPResponse revalidateCachedRequest(File cacheDir, String url, int ttl, int maxStale, CacheEntry cacheEntry,
+                                                 ResponseDecoder<?> decoder, HTTPCall call) {
+
+        Map<String, String> headers = new HashMap<>();
+        if(cacheEntry.getETag().length() > 0) {
+            headers.put("If-None-Match", cacheEntry.getETag());
+        }
+        if(cacheEntry.getLastModified().length() > 0) {
+            headers.put("If-Modified-Since", cacheEntry.getLastModified());
+        }
+
+        HTTPResponse response = doRequest(url, "GET", null, null, headers, cacheDir, ttl, maxStale, decoder, call);
+        if(response.getCode() != 304) {
+            return response;
+        }
+
+        try {
+            Object object = decoder.decode(cacheEntry.openBody());
+            long timestampCacheExpires = System.currentTimeMillis() + (Long.valueOf(ttl) * 60 * 1000);
+
+            CacheStore.open(cacheDir).updateExpiry(getCacheKey(url), timestampCacheExpires,
+                    timestampCacheExpires + Math.max(REVALIDATION_WINDOW, TimeUnit.MINUTES.toMillis(maxStale)));
+            if(CachePolicy.forUrl(url).isMemoryCached() && object instanceof JSONObject) {
+                memoryCache.put(url, (JSONObject) object, timestampCacheExpires, cacheEntry.getContentLength());
+            }
+
+            Log.d(TAG, "Cache entry not modified, extended until " + Instant.ofEpochMilli(timestampCacheExpires) + " for " + url);
+
+            // callers expect a regular 200 when data is returned
+            return new HTTPResponse(200, response.getMessage(), response.getHeaders(), object,
+                    response.getDurationMillis(), HTTPResponse.Source.REVALIDATED);
+
+        } catch(Exception e) {
+            Log.d(TAG, "Could not decode revalidated cache entry for " + url + ": " + e.getMessage());
+            removeCacheEntry(cacheDir, url);
+            return doRequest(url, "GET", null, null, null, cacheDir, ttl, maxStale, decoder, call);
+        }
     }
 
-    public JSONObject getRequest(File cacheDir, String url, int ttl) throws IOException{
-        return doRequest(url, "GET", null, null, null, cacheDir, ttl);
+    /**
+     * Asynchronous GET request, see getRequest(url)
+     *
+     * @param url - String: URL
+     * @param tag - Object: tag to cancel the request with cancelAll(tag), can be null
+     * @param callback - ResponseCallback: called on a background thread when done (not when cancelled), can be null
+     *
+     * @return HTTPCall to cancel or await the request
+     */
+    public HTTPCall getRequestAsync(String url, Object tag, ResponseCallback callback) {
+        return enqueue(tag, callback, call -> doRequest(url, "GET", null, null, null, null, 0, 0, JSON_DECODER, call));
     }
 
-    public JSONObject getRequest(String url, Map<String, String> headers) throws IOException{
-        return doRequest(url, "GET", null, null, headers, null, 0);
+    /**
+     * Asynchronous cached GET request, see getCachedRequest(cacheDir, url)
+     *
+     * @param cacheDir - File: File object pointing to cache dir (getContext().getCacheDir())
+     * @param url - String: URL
+     * @param tag - Object: tag to cancel the request with cancelAll(tag), can be null
+     * @param callback - ResponseCallback: called on a background thread when done (not when cancelled), can be null
+     *
+     * @return HTTPCall to cancel or await the request
+     */
+    public HTTPCall getCachedRequestAsync(File cacheDir, String url, Object tag, ResponseCallback callback) {
+        return getCachedRequestAsync(cacheDir, url, (CacheUpdateListener) null, tag, callback);
     }
 
-    public JSONObject postRequest(String url, String contentType, JSONObject postData) throws IOException {
-        return doRequest(url, "POST", contentType, postData, null, null, 0);
+    // Asynchronous variant of getCachedRequest(cacheDir, url, listener)
+    public HTTPCall getCachedRequestAsync(File cacheDir, String url, CacheUpdateListener listener,
+                                          Object tag, ResponseCallback callback) {
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
+        return enqueue(tag, callback, call -> getCachedRequest(cacheDir, url, cachePolicy.getTtl(), getMaxStale(cachePolicy, listener), listener, JSON_DECODER, call));
     }
 
-    public JSONObject postRequest(String url, String contentType, JSONObject postData, Map<String, String> headers) throws IOException {
-        return doRequest(url, "POST", contentType, postData, headers, null, 0);
+    // Asynchronous variant of getCachedRequest(cacheDir, url, decoder)
+    public HTTPCall getCachedRequestAsync(File cacheDir, String url, ResponseDecoder<?> decoder,
+                                          Object tag, ResponseCallback callback) {
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
+        return enqueue(tag, callback, call -> getCachedRequest(cacheDir, url, cachePolicy.getTtl(), 0, null, decoder, call));
     }
 
-    // Return cached responses, ttl in minutes
-    public JSONObject getCachedRequest(File cacheDir, String url, int ttl) throws IOException {
-        String fileName = getCacheFileName(url);
+    private HTTPCall enqueue(Object tag, ResponseCallback callback, Function<HTTPCall, HTTPResponse> request) {
 
-        File file = new File(cacheDir, fileName);
-        if(file.exists()) {
+        HTTPCall call = new HTTPCall(tag);
 
-            FileInputStream fis = new FileInputStream(file);
-            byte[] data = new byte[(int) file.length()];
-            fis.read(data);
-            fis.close();
+        // owner already gave up on everything with this tag (e.g. the intent was still queued)
+        if(tag != null && cancelledTags.containsKey(tag)) {
+            call.cancel();
+            return call;
+        }
 
-            String input = new String(data, StandardCharsets.UTF_8);
+        activeCalls.add(call);
+        asyncExecutor.execute(() -> {
             try {
-                JSONObject cacheObject = new JSONObject(input);
-                Timestamp timestampCacheExpires = new Timestamp(cacheObject.getLong("timestampCacheExpires"));
-                Instant cacheExpires = timestampCacheExpires.toInstant();
-                JSONObject object = new JSONObject(cacheObject.getString("object"));
-
-                // check if cache entry still valid
-                if(Instant.now().isBefore(cacheExpires)) {
-                    Log.d(TAG, "Returning cached object - Cache still valid until " + cacheExpires.toString() + " result for " + url);
-                    responseCode = 200;
-                    return object;
+                if(call.isCancelled()) {
+                    return;
                 }
 
-            } catch(Exception e) {
-                return getRequest(cacheDir, url, ttl);
+                HTTPResponse response = request.apply(call);
+                if(call.complete(response) && callback != null) {
+                    callback.onResponse(response);
+                }
+            } finally {
+                activeCalls.remove(call);
             }
+        });
+
+        return call;
+    }
+
+    /**
+     * Cancel all asynchronous requests with this tag, including those that are started later on
+     * with the same tag. Use a new tag for each new load (e.g. a new season).
+     *
+     * @param tag - Object: tag passed to the async request methods
+     */
+    public static void cancelAll(Object tag) {
+
+        if(tag == null) {
+            return;
         }
 
-        return getRequest(cacheDir, url, ttl);
+        cancelledTags.put(tag, Boolean.TRUE);
+
+        for(HTTPCall call : activeCalls) {
+            if(tag.equals(call.getTag())) {
+                Log.d(TAG, "Cancelling request with tag " + tag);
+                call.cancel();
+            }
+        }
     }
 
-    public JSONObject getCachedRequest(File cacheDir, String url) throws IOException {
-        return getCachedRequest(cacheDir, url, 30);
+    /*
+     * Called by NetworkMonitor when the network is back: breakers that opened while the
+     * connection went down are closed and the responses served stale in the meantime are
+     * refreshed one by one on the refresh thread, their listeners are called as usual
+     */
+    static void onNetworkAvailable() {
+
+        resetCircuitBreakers();
+
+        refreshExecutor.execute(new PrioritizedTask(CachePolicy.Priority.HIGH, () -> {
+            HTTPClient httpClient = new HTTPClient(RequestPriority.BACKGROUND);
+            for(String url : pendingResyncs.keySet()) {
+                PendingResync resync = pendingResyncs.remove(url);
+                if(resync == null) {
+                    continue;
+                }
+
+                CacheEntry cacheEntry = null;
+                try {
+                    cacheEntry = readCacheEntry(resync.cacheDir, url);
+                } catch (IOException e) {
+                    Log.d(TAG, "Could not read cache entry for " + url + ": " + e.getMessage());
+                }
+
+                httpClient.refreshInBackground(resync.cacheDir, url, resync.ttl, resync.maxStale, cacheEntry, resync.listener, resync.decoder);
+            }
+        }));
     }
 
-    public int getResponseCode() {
-        return responseCode;
+    /**
+     * State of the circuit breaker of every host requested so far, shown in developer mode. Preceded by
+     * a line each for being offline, playback holding back deferrable requests and requests waiting for a slot.
+     *
+     * @return one line per host
+     */
+    public static String getCircuitBreakerStatus() {
+
+        StringBuilder status = new StringBuilder();
+        if(!NetworkMonitor.isOnline()) {
+            status.append("Offline, " + pendingResyncs.size() + " responses waiting for re-sync");
+        }
+
+        String governorStatus = NetworkGovernor.getStatus();
+        if(governorStatus != null) {
+            if(status.length() > 0) {
+                status.append(System.lineSeparator());
+            }
+            status.append(governorStatus);
+        }
+
+        int waitingRequests = requestScheduler.getWaitingCount();
+        if(waitingRequests > 0) {
+            if(status.length() > 0) {
+                status.append(System.lineSeparator());
+            }
+            status.append(waitingRequests + " requests waiting for a connection slot");
+        }
+
+        if(circuitBreakers.isEmpty() && status.length() == 0) {
+            return "No requests yet";
+        }
+
+        for(CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            if(status.length() > 0) {
+                status.append(System.lineSeparator());
+            }
+            status.append(circuitBreaker.getStatus());
+        }
+        return status.toString();
     }
 
-    public String getResponseMessage() {
-        return responseMessage;
+    // Close all circuit breakers, e.g. when the user knows the network is back
+    public static void resetCircuitBreakers() {
+        for(CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            circuitBreaker.reset();
+        }
     }
 
     public CookieManager getCookies() {
         return (CookieManager)CookieHandler.getDefault();
     }
 
-    private static String getCacheFileName(String url) {
-        return "url-cache-" + Utils.sha256(url) + ".json";
-    }
+    // CookieJar backed by the application wide CookieManager (set in MainActivity) so cookies
+    // are shared with AuthService and AccessTokenService, just like HttpsURLConnection did
+    private static class DefaultCookieJar implements CookieJar {
 
-    private static File[] getCacheFiles(File cacheDir) {
-        File[] cacheFiles = cacheDir.listFiles(new FilenameFilter() {
-            public boolean accept(File dir, String name) {
-                return name.startsWith("url-cache-") && name.endsWith(".json");
+        @Override
+        public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+            CookieHandler cookieHandler = CookieHandler.getDefault();
+            if(cookieHandler != null) {
+                new JavaNetCookieJar(cookieHandler).saveFromResponse(url, cookies);
             }
-        });
+        }
+
+        @Override
+        public List<Cookie> loadForRequest(HttpUrl url) {
+            CookieHandler cookieHandler = CookieHandler.getDefault();
+            if(cookieHandler != null) {
+                return new JavaNetCookieJar(cookieHandler).loadForRequest(url);
+            }
+            return Collections.emptyList();
+        }
+    }
+
+    private static String getCacheKey(String url) {
+        return Utils.sha256(url);
+    }
+
+    // Read cache entry (header + body) of url, null if there is none
+    private static CacheEntry readCacheEntry(File cacheDir, String url) throws IOException {
+
+        String cacheKey = getCacheKey(url);
+
+        CacheEntry cacheEntry = cacheWriter.read(cacheDir, cacheKey);
+        if(cacheEntry != null) {
+            // keep track of the access order for LRU eviction
+            cacheBudget.touch(cacheKey);
+        }
+
+        return cacheEntry;
+    }
+
+    // Moment the startup sweep may remove a cache entry, entries that can be revalidated or
+    // served stale (maxStale in minutes) are kept a while longer
+    static long getSweepTimestamp(CacheEntry cacheEntry, int maxStale) {
+        long keep = TimeUnit.MINUTES.toMillis(maxStale);
+        if(cacheEntry.hasValidators()) {
+            keep = Math.max(keep, REVALIDATION_WINDOW);
+        }
+        return cacheEntry.getTimestampCacheExpires() + keep;
+    }
+
+    // Remove cache entry of a single url from all tiers
+    private static void removeCacheEntry(File cacheDir, String url) {
 
-        return cacheFiles;
+        cacheWriter.remove(cacheDir, getCacheKey(url));
+        memoryCache.remove(url);
+    }
+
+    /**
+     * Set the disk budget of all cache entries together, each CachePolicy gets a share of it.
+     * Least recently used entries are evicted on the next cache writes until the cache fits, the
+     * garbage they leave behind in the CacheStore counts against the budget until it's compacted.
+     *
+     * @param maxSize - long: budget in bytes
+     */
+    public static void setMaxCacheSize(long maxSize) {
+        cacheBudget.setMaxSize(maxSize);
     }
 
     // Clear all caches
     public static void clearCache(File cacheDir) {
 
-        for(File file : getCacheFiles(cacheDir)) {
-            file.delete();
-        }
+        cacheWriter.clear(cacheDir);
+        memoryCache.clear();
 
     }
 
-    // Clear all expired cache files
+    /*
+     * Clear all expired cache entries
+     *
+     * Opening the CacheStore builds its index (and migrates cache files of the old layout), the
+     * expired entries are then removed in one batch and the segments are compacted if that left
+     * enough garbage behind. Entries that can be revalidated (ETag / Last-Modified) are kept for
+     * REVALIDATION_WINDOW after expiry, entries requested with a max-stale window are kept until
+     * that window has passed.
+     * This does disk I/O so don't call it from the main thread.
+     */
     public static void clearExpiredCache(File cacheDir) {
 
-        for (File file : getCacheFiles(cacheDir)) {
-            if (file.exists()) {
-                try {
-                    FileInputStream fis = new FileInputStream(file);
-                    byte[] data = new byte[(int) file.length()];
-                    fis.read(data);
-                    fis.close();
-
-                    String input = new String(data, StandardCharsets.UTF_8);
+        memoryCache.clearExpired();
 
-                    JSONObject cacheObject = new JSONObject(input);
-                    Timestamp timestampCacheExpires = new Timestamp(cacheObject.getLong("timestampCacheExpires"));
-                    Instant cacheExpires = timestampCacheExpires.toInstant();
+        CacheStore cacheStore = CacheStore.open(cacheDir);
 
-                    // check if cache entry still valid
-                    if (Instant.now().isAfter(cacheExpires)) {
-                        Log.d(TAG, "Removing expired cache file: " + file.getName() + " which expired on " + cacheExpires);
-                        file.delete();
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+        List<String> expiredKeys = cacheStore.removeExpired();
+        for(String cacheKey : expiredKeys) {
+            cacheBudget.remove(cacheKey);
         }
+
+        Log.d(TAG, "Removed " + expiredKeys.size() + " expired cache entries");
+
+        cacheStore.compact(cacheBudget.getMaxSize());
+
+        // build the size table here so the first cache write doesn't have to
+        cacheBudget.load(cacheDir);
     }
 
     // Clear Catalog + Favorites cache
@@ -346,35 +1175,29 @@ public class HTTPClient {
 
         // Catalog cache
         for(String programType : programTypes) {
-            String url = String.format(catalogURL, programType);
-            String fileName = getCacheFileName(url);
-            File file = new File(cacheDir, fileName);
-
-            if(file.exists()) {
-                file.delete();
-            }
+            removeCacheEntry(cacheDir, String.format(catalogURL, programType));
         }
 
         // Favorites cache
-        String fileName = getCacheFileName(favoritesURL);
-        File file = new File(cacheDir, fileName);
-        if(file.exists()) {
-            file.delete();
-        }
-
+        removeCacheEntry(cacheDir, favoritesURL);
     }
 
+    // Summary of the disk and memory cache for developer mode, opens (loads) the CacheStore of
+    // cacheDir so don't call it from the main thread
     public static String getCacheStatistics(File cacheDir) {
 
-        File[] cacheFiles = getCacheFiles(cacheDir);
+        CacheStore cacheStore = CacheStore.open(cacheDir);
 
-        int cacheCount = cacheFiles.length;
-        long totalSize = 0;
+        StringBuilder statistics = new StringBuilder();
+        statistics.append(cacheStore.getCount() + " items, total size: " + cacheStore.getDiskSize() / 1024 + "KiB of "
+                + cacheBudget.getMaxSize() / 1024 + "KiB (" + cacheStore.getGarbageSize() / 1024 + "KiB garbage, "
+                + cacheWriter.getPendingCount() + " writes pending)");
 
-        for(File file : cacheFiles) {
-            totalSize += (file.length() / 1024);
+        for(String endpointStatistics : cacheBudget.getStatistics(cacheDir)) {
+            statistics.append(System.lineSeparator()).append(endpointStatistics);
         }
 
-        return cacheCount + " items, total size: " + totalSize + "KiB";
+        statistics.append(System.lineSeparator()).append("Memory: " + memoryCache.getStatistics());
+        return statistics.toString();
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONObject;
+
+import okhttp3.Headers;
+
+/*
+ * Immutable result of a HTTPClient request
+ *
+ * Holds everything a caller needs to know about the request: status, headers, the decoded body,
+ * how long it took and where the data came from. As HTTPClient itself keeps no per-request
+ * state anymore one instance can be used from any number of threads.
+ *
+ * The JSON body can be shared with the memory cache and other callers of the same URL, don't modify it.
+ * Bodies decoded by a caller supplied ResponseDecoder belong to that caller.
+ */
+public final class HTTPResponse {
+
+    // Where the body of the response came from
+    public enum Source {
+        NETWORK,        // downloaded
+        SHARED,         // downloaded by a concurrent request for the same URL
+        MEMORY_CACHE,   // parsed copy in the memory tier
+        DISK_CACHE,     // valid cache file
+        STALE_CACHE,    // expired cache file within its max-stale window or while offline, refreshed in the background
+        REVALIDATED     // expired cache file, server answered 304 Not Modified
+    }
+
+    private final int code;
+    private final String message;
+    private final Headers headers;
+    private final Object body;
+    private final long durationMillis;
+    private final Source source;
+    private final boolean cancelled;
+
+    HTTPResponse(int code, String message, Headers headers, Object body, long durationMillis, Source source) {
+        this(code, message, headers, body, durationMillis, source, false);
+    }
+
+    private HTTPResponse(int code, String message, Headers headers, Object body, long durationMillis, Source source, boolean cancelled) {
+        this.code = code;
+        this.message = message == null ? "" : message;
+        this.headers = headers == null ? Headers.of() : headers;
+        this.body = body;
+        this.durationMillis = durationMillis;
+        this.source = source;
+        this.cancelled = cancelled;
+    }
+
+    // Successful response served from one of the cache tiers
+    static HTTPResponse fromCache(Object body, long durationMillis, Source source) {
+        return new HTTPResponse(200, "OK", null, body, durationMillis, source);
+    }
+
+    // Request that didn't get a response at all (no network, timeout, ...), code is 0
+    static HTTPResponse failed(String message, long durationMillis) {
+        return new HTTPResponse(0, message, null, null, durationMillis, Source.NETWORK);
+    }
+
+    // Request cancelled through its HTTPCall, code is 0 and there is no body
+    static HTTPResponse cancelled(long durationMillis) {
+        return new HTTPResponse(0, "Cancelled", null, null, durationMillis, Source.NETWORK, true);
+    }
+
+    HTTPResponse withSource(Source source) {
+        return new HTTPResponse(code, message, headers, body, durationMillis, source, cancelled);
+    }
+
+    // HTTP status code (200, 404, ...) or 0 if the request failed before a response was received
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccessful() {
+        return code >= 200 && code <= 299;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+
+    // Value of the response header name, null if not present
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    // Decoded JSON body, JSON arrays are wrapped in "data". null if the body wasn't JSON.
+    public JSONObject getBody() {
+        return body instanceof JSONObject ? (JSONObject) body : null;
+    }
+
+    // Body as returned by the ResponseDecoder of the request, null if it couldn't be decoded
+    @SuppressWarnings("unchecked")
+    public <T> T getDecodedBody() {
+        return (T) body;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Expired data, served within its max-stale window or because the network or host is unavailable
+    public boolean isStale() {
+        return source == Source.STALE_CACHE;
+    }
+
+    public boolean isFromCache() {
+        return source != Source.NETWORK && source != Source.SHARED;
+    }
+
+    @Override
+    public String toString() {
+        return code + ": " + message;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock free histogram with power of two buckets
+ *
+ * Bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds zero. Recording a value is a few
+ * atomic increments so it can be done for every request, percentiles are approximated by the
+ * upper bound of their bucket (never more than the largest value seen).
+ */
+class Histogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if(value < 0) {
+            return;
+        }
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    // percentile between 0 and 100
+    long getPercentile(double percentile) {
+
+        long n = count.get();
+        if(n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if(seen >= rank) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void clear() {
+        for(int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // e.g. "p50 120 / p95 800 / max 1500" followed by unit
+    String getSummary(String unit) {
+        return "p50 " + getPercentile(50) + unit + " / p95 " + getPercentile(95) + unit + " / max " + getMax() + unit;
+    }
+
+    JSONObject toJSON() throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put("count", getCount());
+        object.put("mean", getMean());
+        object.put("p50", getPercentile(50));
+        object.put("p90", getPercentile(90));
+        object.put("p95", getPercentile(95));
+        object.put("p99", getPercentile(99));
+        object.put("max", getMax());
+        return object;
+    }
+}
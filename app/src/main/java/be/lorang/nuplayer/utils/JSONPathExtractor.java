@@ -0,0 +1,293 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up a set of paths in a JSON document in a single pass
+ *
+ * Paths are keys separated by "/", array elements are addressed by their index, and "*" in a
+ * key matches any characters (e.g. ":items/parsys/:items/container/:items/episodes_list_*").
+ * All registered paths are resolved together: only values on the way to one of them are looked
+ * at, everything else is skipped. A path that isn't there simply has no match, no exceptions.
+ *
+ * Documents are read straight from an InputStream, only the matched values are decoded (the rest
+ * of the document is tokenized but never built). Top level arrays are wrapped in "data", the same
+ * as JSONStreamParser does. As a ResponseDecoder it resolves the paths while HTTPClient reads the
+ * response, HTTPResponse.getDecodedBody() is the Result.
+ *
+ * Register the paths once, extract() can be called from multiple threads.
+ */
+public class JSONPathExtractor implements ResponseDecoder<JSONPathExtractor.Result> {
+
+    private final List<Path> paths = new ArrayList<>();
+
+    private static class Path {
+        private final String name;
+        private final String[] segments;
+
+        private Path(String name, String path) {
+            this.name = name;
+            this.segments = path.split("/");
+        }
+    }
+
+    /**
+     * All values found for the registered paths, in document order
+     */
+    public static class Result {
+
+        // name -> concrete paths of its matches, e.g. ":items/episodes_list_268730743"
+        private final Map<String, List<String>> matches = new HashMap<>();
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private void add(String name, String path, Object value) {
+            List<String> namePaths = matches.get(name);
+            if(namePaths == null) {
+                namePaths = new ArrayList<>();
+                matches.put(name, namePaths);
+            }
+            namePaths.add(path);
+            values.put(path, value);
+        }
+
+        public boolean has(String name) {
+            return matches.containsKey(name);
+        }
+
+        // Value of the last match of a registered path, null if there is none. With a "*" in the
+        // path a later key wins, like looking the keys up one by one would.
+        public Object opt(String name) {
+            List<String> namePaths = matches.get(name);
+            return namePaths == null ? null : values.get(namePaths.get(namePaths.size() - 1));
+        }
+
+        public JSONObject optJSONObject(String name) {
+            Object value = opt(name);
+            return value instanceof JSONObject ? (JSONObject) value : null;
+        }
+
+        public JSONArray optJSONArray(String name) {
+            Object value = opt(name);
+            return value instanceof JSONArray ? (JSONArray) value : null;
+        }
+
+        // String value of the last match, "" if there is none (like JSONObject.optString())
+        public String optString(String name) {
+            Object value = opt(name);
+            return value == null || value == JSONObject.NULL ? "" : value.toString();
+        }
+
+        // Concrete paths of all matches of a registered path
+        public List<String> getPaths(String name) {
+            List<String> namePaths = matches.get(name);
+            return namePaths == null ? Collections.emptyList() : Collections.unmodifiableList(namePaths);
+        }
+
+        // Value at a concrete path returned by getPaths(), null if nothing matched there
+        public Object optAt(String path) {
+            return values.get(path);
+        }
+    }
+
+    /**
+     * Register a path to look up
+     *
+     * @param name - String: name to get the matches by from the Result
+     * @param path - String: keys separated by "/", "*" matches any characters within a key
+     * @return this
+     */
+    public JSONPathExtractor add(String name, String path) {
+        paths.add(new Path(name, path));
+        return this;
+    }
+
+    /**
+     * Resolve all paths while reading a JSON document (UTF-8)
+     *
+     * @param inputStream - InputStream: stream to read, not closed by this method
+     * @return Result with the decoded values of all matches
+     */
+    public Result extract(InputStream inputStream) throws IOException, JSONException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+
+        Result result = new Result();
+        if(reader.peek() == JsonToken.BEGIN_ARRAY) {
+            read(reader, descend(paths, 0, "data"), 1, "data", result);
+        } else {
+            read(reader, paths, 0, "", result);
+        }
+        return result;
+    }
+
+    @Override
+    public Result decode(InputStream inputStream) throws IOException, JSONException {
+        return extract(inputStream);
+    }
+
+    // Parent of a concrete path, e.g. to look up a sibling of a match with Result.optAt()
+    public static String getParentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index == -1 ? "" : path.substring(0, index);
+    }
+
+    // candidates: paths of which the first depth segments match the current position
+    private static void read(JsonReader reader, List<Path> candidates, int depth, String path,
+                             Result result) throws IOException, JSONException {
+
+        if(candidates.isEmpty()) {
+            reader.skipValue();
+            return;
+        }
+
+        // decode a matched value, longer paths below it are resolved in the decoded value
+        for(Path candidate : candidates) {
+            if(candidate.segments.length == depth) {
+                walk(JSONStreamParser.readValue(reader), candidates, depth, path, result);
+                return;
+            }
+        }
+
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    read(reader, descend(candidates, depth, key), depth + 1, getChildPath(path, key), result);
+                }
+                reader.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    String key = Integer.toString(i);
+                    read(reader, descend(candidates, depth, key), depth + 1, getChildPath(path, key), result);
+                }
+                reader.endArray();
+                break;
+            default:
+                // a scalar where the paths expect more levels
+                reader.skipValue();
+        }
+    }
+
+    // Same as read() on a decoded value, the subtree of a match
+    private static void walk(Object value, List<Path> candidates, int depth, String path, Result result) {
+
+        boolean descend = false;
+        for(Path candidate : candidates) {
+            if(candidate.segments.length == depth) {
+                result.add(candidate.name, path, value);
+            } else {
+                descend = true;
+            }
+        }
+
+        if(!descend) {
+            return;
+        }
+
+        if(value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                List<Path> next = descend(candidates, depth, key);
+                if(!next.isEmpty()) {
+                    walk(object.opt(key), next, depth + 1, getChildPath(path, key), result);
+                }
+            }
+        } else if(value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                String key = Integer.toString(i);
+                List<Path> next = descend(candidates, depth, key);
+                if(!next.isEmpty()) {
+                    walk(array.opt(i), next, depth + 1, getChildPath(path, key), result);
+                }
+            }
+        }
+    }
+
+    // Candidates that continue with key at depth
+    private static List<Path> descend(List<Path> candidates, int depth, String key) {
+        List<Path> next = null;
+        for(Path candidate : candidates) {
+            if(candidate.segments.length > depth && matches(candidate.segments[depth], key)) {
+                if(next == null) {
+                    next = new ArrayList<>(candidates.size());
+                }
+                next.add(candidate);
+            }
+        }
+        return next == null ? Collections.emptyList() : next;
+    }
+
+    // Glob match of a single key, "*" matches any (possibly empty) sequence of characters
+    static boolean matches(String pattern, String key) {
+
+        int wildcard = pattern.indexOf('*');
+        if(wildcard == -1) {
+            return pattern.equals(key);
+        }
+
+        if(!key.startsWith(pattern.substring(0, wildcard))) {
+            return false;
+        }
+
+        int position = wildcard;
+        int start = wildcard + 1;
+        while (true) {
+            int end = pattern.indexOf('*', start);
+            if(end == -1) {
+                String suffix = pattern.substring(start);
+                return key.length() - suffix.length() >= position && key.endsWith(suffix);
+            }
+
+            int found = key.indexOf(pattern.substring(start, end), position);
+            if(found == -1) {
+                return false;
+            }
+            position = found + end - start;
+            start = end + 1;
+        }
+    }
+
+    private static String getChildPath(String path, String key) {
+        return path.isEmpty() ? key : path + "/" + key;
+    }
+}
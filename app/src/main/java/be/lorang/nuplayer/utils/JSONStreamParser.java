@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass JSON decoder that reads directly from an InputStream into org.json objects
+ *
+ * The response body is never copied into an intermediate String and is only tokenized once,
+ * this keeps peak memory down for the large AEM model.json and search7 suggest payloads.
+ */
+public class JSONStreamParser {
+
+    private JSONStreamParser() {}
+
+    /**
+     * Decode a JSON document from an InputStream (UTF-8)
+     *
+     * The VRT.NU API sometimes returns JSONObjects (e.g. Episode lists) but sometimes also
+     * JSONArrays (e.g. Catalog). Based on the first token an array is wrapped in a single
+     * JSONObject called "data".
+     *
+     * @param inputStream - InputStream: stream to decode, not closed by this method
+     *
+     * @return JSONObject with result or null if the document is not an object or array
+     */
+    public static JSONObject parse(InputStream inputStream) throws IOException, JSONException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                JSONObject result = new JSONObject();
+                result.put("data", readArray(reader));
+                return result;
+            default:
+                return null;
+        }
+    }
+
+    private static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            object.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    // Decode the next value, also used by JSONPathExtractor for the subtrees it extracts
+    static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected JSON token " + token + " at " + reader.getPath());
+        }
+    }
+
+    // Same number types as org.json's JSONTokener: Integer, Long or Double
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // too large for a long, fall through to double
+            }
+        }
+        return Double.valueOf(number);
+    }
+}
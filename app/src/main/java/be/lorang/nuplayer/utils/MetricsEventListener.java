@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/*
+ * Records the network phases of a single OkHttp call in RequestMetrics
+ *
+ * A new listener is created per call (see FACTORY) so no synchronization is needed,
+ * events of one call are delivered sequentially.
+ */
+class MetricsEventListener extends EventListener {
+
+    static final EventListener.Factory FACTORY = call -> new MetricsEventListener(
+            RequestMetrics.get(RequestTemplate.fromUrl(call.request().url().toString())));
+
+    private final RequestMetrics.EndpointMetrics metrics;
+
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long responseBodyStart;
+    private boolean newConnection = false;
+
+    private MetricsEventListener(RequestMetrics.EndpointMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private static long getElapsedMillis(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.dns.record(getElapsedMillis(dnsStart));
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+        newConnection = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics.tls.record(getElapsedMillis(secureConnectStart));
+    }
+
+    // includes the TLS handshake
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics.connect.record(getElapsedMillis(connectStart));
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+        metrics.connect.record(getElapsedMillis(connectStart));
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        metrics.ttfb.record(getElapsedMillis(requestStart));
+
+        // time to first byte of the whole call, split on whether it had to set up a connection first
+        if(newConnection) {
+            metrics.firstByteNewConnection.record(getElapsedMillis(callStart));
+        } else {
+            metrics.firstByteReusedConnection.record(getElapsedMillis(callStart));
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        if(response.code() >= 400) {
+            metrics.errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        metrics.body.record(getElapsedMillis(responseBodyStart));
+        metrics.wireSize.record(byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        metrics.networkRequests.incrementAndGet();
+        metrics.total.record(getElapsedMillis(callStart));
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.networkRequests.incrementAndGet();
+        metrics.total.record(getElapsedMillis(callStart));
+        if(call.isCanceled()) {
+            metrics.cancelled.incrementAndGet();
+        } else {
+            metrics.errors.incrementAndGet();
+        }
+    }
+}
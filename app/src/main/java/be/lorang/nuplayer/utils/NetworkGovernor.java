@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/*
+ * Holds back deferrable HTTPClient traffic (PREFETCH and BACKGROUND requests) while a video plays
+ *
+ * The player reports its buffer and the bandwidth estimate of its ABR about once a second. When it
+ * is (re)buffering or its buffer drops below BUFFER_FLOOR, deferrable requests don't start at all.
+ * While the buffer is still filling up to BUFFER_STEADY, or the estimated bandwidth leaves little
+ * headroom over the bitrate of the current rendition, one deferrable request at a time may run.
+ * In steady state playback they run as usual again. See RequestScheduler.
+ *
+ * A player that stops reporting (e.g. it crashed before releasing) is forgotten after
+ * REPORT_TIMEOUT, deferrable requests are never held back for good.
+ */
+public final class NetworkGovernor {
+
+    private static final String TAG = "NetworkGovernor";
+
+    // buffered media (ms) below which deferrable requests pause, and above which playback is steady
+    private static final long BUFFER_FLOOR = 10000;
+    private static final long BUFFER_STEADY = 30000;
+
+    // estimated bandwidth has to be this many times the bitrate of the current rendition
+    private static final int BANDWIDTH_HEADROOM = 2;
+
+    private static final long REPORT_TIMEOUT = 5000;
+
+    enum Mode {
+        NORMAL,
+        THROTTLED,
+        PAUSED
+    }
+
+    private static Object player;
+    private static Mode mode = Mode.NORMAL;
+    private static long lastReport;
+    private static long bufferedMillis;
+    private static long bandwidthEstimate;
+    private static int bitrate;
+
+    private NetworkGovernor() {}
+
+    /**
+     * Report the state of a player, call it regularly while the player is prepared
+     *
+     * @param source - Object: the reporting player, only one player is tracked at a time
+     * @param buffering - boolean: true while the player is (re)buffering
+     * @param playWhenReady - boolean: false while paused by the user
+     * @param bufferedMillis - long: media buffered ahead of the playback position (ms)
+     * @param bandwidthEstimate - long: bandwidth estimate of the player in bits per second, 0 if unknown
+     * @param bitrate - int: bitrate of the current video rendition in bits per second, negative if unknown
+     */
+    public static synchronized void update(Object source, boolean buffering, boolean playWhenReady,
+                                           long bufferedMillis, long bandwidthEstimate, int bitrate) {
+
+        player = source;
+        lastReport = SystemClock.elapsedRealtime();
+        NetworkGovernor.bufferedMillis = bufferedMillis;
+        NetworkGovernor.bandwidthEstimate = bandwidthEstimate;
+        NetworkGovernor.bitrate = bitrate;
+
+        Mode newMode;
+        if(!playWhenReady && !buffering) {
+            // paused by the user, nothing will stall
+            newMode = Mode.NORMAL;
+        } else if(buffering || bufferedMillis < BUFFER_FLOOR) {
+            newMode = Mode.PAUSED;
+        } else if(bufferedMillis < BUFFER_STEADY
+                || (bitrate > 0 && bandwidthEstimate > 0 && bandwidthEstimate < (long) bitrate * BANDWIDTH_HEADROOM)) {
+            newMode = Mode.THROTTLED;
+        } else {
+            newMode = Mode.NORMAL;
+        }
+
+        setMode(newMode);
+    }
+
+    /**
+     * Stop tracking a player, call it when playback ends or the player is released
+     *
+     * @param source - Object: the player passed to update()
+     */
+    public static synchronized void release(Object source) {
+        if(player == source) {
+            player = null;
+            setMode(Mode.NORMAL);
+        }
+    }
+
+    static synchronized Mode getMode() {
+
+        if(player != null && SystemClock.elapsedRealtime() - lastReport > REPORT_TIMEOUT) {
+            Log.d(TAG, "No reports from the player anymore, releasing it");
+            player = null;
+            setMode(Mode.NORMAL);
+        }
+
+        return mode;
+    }
+
+    // Current mode and the numbers behind it, shown in developer mode (null without player)
+    static synchronized String getStatus() {
+
+        if(getMode() == Mode.NORMAL && player == null) {
+            return null;
+        }
+
+        return "Playback: deferrable requests " + mode.name().toLowerCase() + " (buffer " + bufferedMillis / 1000
+                + "s, bandwidth " + bandwidthEstimate / 1000 + "kbps, bitrate "
+                + (bitrate > 0 ? bitrate / 1000 + "kbps)" : "unknown)");
+    }
+
+    private static void setMode(Mode newMode) {
+        if(newMode != mode) {
+            Log.d(TAG, "Deferrable requests " + mode.name().toLowerCase() + " -> " + newMode.name().toLowerCase());
+            mode = newMode;
+        }
+    }
+}
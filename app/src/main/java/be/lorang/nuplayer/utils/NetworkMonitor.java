@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+/*
+ * Keeps track of network connectivity for HTTPClient
+ *
+ * While there's no network HTTPClient doesn't try the network at all: cached responses are
+ * returned no matter how old (flagged stale) and other requests fail right away instead of
+ * being retried. Once the network is back HTTPClient re-syncs the responses it served stale.
+ *
+ * Until start() is called the network is assumed to be available.
+ */
+public final class NetworkMonitor {
+
+    private static final String TAG = "NetworkMonitor";
+
+    private static volatile boolean online = true;
+    private static Network defaultNetwork;
+    private static boolean started = false;
+
+    private NetworkMonitor() {}
+
+    /**
+     * Start listening for changes of the default network, only the first call has effect
+     *
+     * @param context - Context: application context
+     */
+    public static synchronized void start(Context context) {
+
+        if(started) {
+            return;
+        }
+
+        ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+        if(connectivityManager == null) {
+            return;
+        }
+
+        started = true;
+        defaultNetwork = connectivityManager.getActiveNetwork();
+        online = defaultNetwork != null;
+        Log.d(TAG, online ? "Network available" : "No network available");
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                setDefaultNetwork(network);
+            }
+
+            @Override
+            public void onLost(Network network) {
+                // when switching networks the new one may already be the default
+                synchronized (NetworkMonitor.class) {
+                    if(!network.equals(defaultNetwork)) {
+                        return;
+                    }
+                }
+                setDefaultNetwork(null);
+            }
+        });
+    }
+
+    public static boolean isOnline() {
+        return online;
+    }
+
+    private static void setDefaultNetwork(Network network) {
+
+        boolean wasOnline;
+        synchronized (NetworkMonitor.class) {
+            defaultNetwork = network;
+            wasOnline = online;
+            online = network != null;
+        }
+
+        if(online && !wasOnline) {
+            Log.d(TAG, "Network available again");
+            HTTPClient.onNetworkAvailable();
+        } else if(!online && wasOnline) {
+            Log.d(TAG, "Network lost, going offline");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Runnable for executors with a PriorityBlockingQueue, higher CachePolicy.Priority first and
+ * first in first out within the same priority
+ */
+class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final CachePolicy.Priority priority;
+    private final long order = sequence.getAndIncrement();
+    private final Runnable runnable;
+
+    PrioritizedTask(CachePolicy.Priority priority, Runnable runnable) {
+        this.priority = priority;
+        this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+        runnable.run();
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask other) {
+        if(priority != other.priority) {
+            return other.priority.compareTo(priority);
+        }
+        return Long.compare(order, other.order);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Latency and payload metrics of HTTPClient requests per RequestTemplate
+ *
+ * Network phases (DNS, connect, TLS, time to first byte, body) and wire sizes are recorded by
+ * MetricsEventListener for every OkHttp call, cache results and parse times by HTTPClient.
+ * The response body is decoded while it streams in, so "body" covers both download and parse of
+ * network responses, "parse" is the decode time of cache files.
+ *
+ * All values live in histograms of atomic counters, recording doesn't lock or allocate.
+ * The outcome of pre-warming connections at launch (see ConnectionPrewarmer) is kept per host.
+ */
+public final class RequestMetrics {
+
+    private static final Map<RequestTemplate, EndpointMetrics> metrics = createMetrics();
+
+    // host -> outcome of its pre-warm request, e.g. "120ms h2"
+    private static final Map<String, String> prewarmResults = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    static class EndpointMetrics {
+
+        // timings in milliseconds
+        final Histogram total = new Histogram();
+        final Histogram dns = new Histogram();
+        final Histogram connect = new Histogram();
+        final Histogram tls = new Histogram();
+        final Histogram ttfb = new Histogram();
+
+        // from the start of the call to the first response byte, with or without setting up a connection
+        final Histogram firstByteNewConnection = new Histogram();
+        final Histogram firstByteReusedConnection = new Histogram();
+        final Histogram body = new Histogram();
+        final Histogram parse = new Histogram();
+        final Histogram cacheLookup = new Histogram();
+
+        // time spent waiting for a slot in the RequestScheduler
+        final Histogram queueWait = new Histogram();
+
+        // compressed response size in bytes
+        final Histogram wireSize = new Histogram();
+
+        final AtomicLong networkRequests = new AtomicLong();
+        final AtomicLong memoryHits = new AtomicLong();
+        final AtomicLong diskHits = new AtomicLong();
+        final AtomicLong staleHits = new AtomicLong();
+        final AtomicLong revalidated = new AtomicLong();
+        final AtomicLong shared = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+
+        private long getCacheHits() {
+            return memoryHits.get() + diskHits.get() + staleHits.get();
+        }
+
+        private boolean isEmpty() {
+            return networkRequests.get() == 0 && getCacheHits() == 0 && shared.get() == 0 && cancelled.get() == 0;
+        }
+
+        private Histogram[] getHistograms() {
+            return new Histogram[] { total, dns, connect, tls, ttfb, firstByteNewConnection, firstByteReusedConnection, body, parse, cacheLookup, queueWait, wireSize };
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject object = new JSONObject();
+            object.put("networkRequests", networkRequests.get());
+            object.put("memoryHits", memoryHits.get());
+            object.put("diskHits", diskHits.get());
+            object.put("staleHits", staleHits.get());
+            object.put("revalidated", revalidated.get());
+            object.put("shared", shared.get());
+            object.put("misses", misses.get());
+            object.put("errors", errors.get());
+            object.put("retries", retries.get());
+            object.put("cancelled", cancelled.get());
+            object.put("totalMillis", total.toJSON());
+            object.put("dnsMillis", dns.toJSON());
+            object.put("connectMillis", connect.toJSON());
+            object.put("tlsMillis", tls.toJSON());
+            object.put("ttfbMillis", ttfb.toJSON());
+            object.put("firstByteNewConnectionMillis", firstByteNewConnection.toJSON());
+            object.put("firstByteReusedConnectionMillis", firstByteReusedConnection.toJSON());
+            object.put("bodyMillis", body.toJSON());
+            object.put("parseMillis", parse.toJSON());
+            object.put("cacheLookupMillis", cacheLookup.toJSON());
+            object.put("queueWaitMillis", queueWait.toJSON());
+            object.put("wireSizeBytes", wireSize.toJSON());
+            return object;
+        }
+    }
+
+    private RequestMetrics() {}
+
+    private static Map<RequestTemplate, EndpointMetrics> createMetrics() {
+        Map<RequestTemplate, EndpointMetrics> metrics = new EnumMap<>(RequestTemplate.class);
+        for(RequestTemplate template : RequestTemplate.values()) {
+            metrics.put(template, new EndpointMetrics());
+        }
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    static EndpointMetrics get(RequestTemplate template) {
+        return metrics.get(template);
+    }
+
+    static EndpointMetrics get(String url) {
+        return metrics.get(RequestTemplate.fromUrl(url));
+    }
+
+    // Outcome of a getCachedRequest() call
+    static void recordCacheResult(String url, HTTPResponse response) {
+
+        EndpointMetrics endpointMetrics = get(url);
+
+        if(response.isCancelled()) {
+            endpointMetrics.cancelled.incrementAndGet();
+            return;
+        }
+
+        switch (response.getSource()) {
+            case MEMORY_CACHE:
+                endpointMetrics.memoryHits.incrementAndGet();
+                break;
+            case DISK_CACHE:
+                endpointMetrics.diskHits.incrementAndGet();
+                break;
+            case STALE_CACHE:
+                endpointMetrics.staleHits.incrementAndGet();
+                break;
+            case REVALIDATED:
+                endpointMetrics.revalidated.incrementAndGet();
+                break;
+            case SHARED:
+                endpointMetrics.shared.incrementAndGet();
+                break;
+            default:
+                endpointMetrics.misses.incrementAndGet();
+                return;
+        }
+
+        endpointMetrics.cacheLookup.record(response.getDurationMillis());
+    }
+
+    static void recordParse(String url, long millis) {
+        get(url).parse.record(millis);
+    }
+
+    static void recordPrewarm(String host, String result) {
+        prewarmResults.put(host, result);
+    }
+
+    static void recordQueueWait(String url, long millis) {
+        get(url).queueWait.record(millis);
+    }
+
+    static void recordRetry(String url) {
+        get(url).retries.incrementAndGet();
+    }
+
+    public static void clear() {
+        for(EndpointMetrics endpointMetrics : metrics.values()) {
+            for(Histogram histogram : endpointMetrics.getHistograms()) {
+                histogram.clear();
+            }
+            endpointMetrics.networkRequests.set(0);
+            endpointMetrics.memoryHits.set(0);
+            endpointMetrics.diskHits.set(0);
+            endpointMetrics.staleHits.set(0);
+            endpointMetrics.revalidated.set(0);
+            endpointMetrics.shared.set(0);
+            endpointMetrics.misses.set(0);
+            endpointMetrics.errors.set(0);
+            endpointMetrics.retries.set(0);
+            endpointMetrics.cancelled.set(0);
+        }
+    }
+
+    /**
+     * Summary of all request templates with traffic, shown in developer mode
+     *
+     * @return a few lines per request template
+     */
+    public static String getStatistics() {
+
+        StringBuilder statistics = new StringBuilder();
+
+        for(Map.Entry<RequestTemplate, EndpointMetrics> entry : metrics.entrySet()) {
+            EndpointMetrics m = entry.getValue();
+            if(m.isEmpty()) {
+                continue;
+            }
+
+            if(statistics.length() > 0) {
+                statistics.append(System.lineSeparator());
+            }
+
+            statistics.append(entry.getKey().getLabel() + ": " + m.networkRequests.get() + " network, "
+                    + m.getCacheHits() + " cached (memory " + m.memoryHits.get() + ", disk " + m.diskHits.get()
+                    + ", stale " + m.staleHits.get() + "), " + m.revalidated.get() + " revalidated, "
+                    + m.shared.get() + " shared, " + m.errors.get() + " errors, " + m.retries.get() + " retries");
+            statistics.append(System.lineSeparator());
+            statistics.append("  total " + m.total.getSummary("ms") + ", ttfb " + m.ttfb.getSummary("ms")
+                    + ", body " + m.body.getSummary("ms"));
+            statistics.append(System.lineSeparator());
+            statistics.append("  dns p95 " + m.dns.getPercentile(95) + "ms, connect p95 " + m.connect.getPercentile(95)
+                    + "ms, tls p95 " + m.tls.getPercentile(95) + "ms, parse p95 " + m.parse.getPercentile(95)
+                    + "ms, queue p95 " + m.queueWait.getPercentile(95) + "ms, size p50 "
+                    + m.wireSize.getPercentile(50) / 1024 + "KiB / max " + m.wireSize.getMax() / 1024 + "KiB");
+            statistics.append(System.lineSeparator());
+            statistics.append("  first byte on new connection " + m.firstByteNewConnection.getSummary("ms")
+                    + ", on reused connection " + m.firstByteReusedConnection.getSummary("ms"));
+        }
+
+        synchronized (prewarmResults) {
+            if(!prewarmResults.isEmpty()) {
+                if(statistics.length() > 0) {
+                    statistics.append(System.lineSeparator());
+                }
+                statistics.append("pre-warm: " + prewarmResults.toString());
+            }
+        }
+
+        if(statistics.length() == 0) {
+            return "No requests yet";
+        }
+
+        return statistics.toString();
+    }
+
+    /**
+     * All metrics as JSON, for exporting from a device
+     *
+     * @return JSON object with an object per request template
+     */
+    public static JSONObject export() throws JSONException {
+
+        JSONObject object = new JSONObject();
+        object.put("timestamp", System.currentTimeMillis());
+
+        JSONObject templates = new JSONObject();
+        for(Map.Entry<RequestTemplate, EndpointMetrics> entry : metrics.entrySet()) {
+            if(!entry.getValue().isEmpty()) {
+                JSONObject templateMetrics = entry.getValue().toJSON();
+                templateMetrics.put("cachePolicy", CachePolicy.forTemplate(entry.getKey()).toString());
+                templates.put(entry.getKey().getLabel(), templateMetrics);
+            }
+        }
+        object.put("templates", templates);
+
+        synchronized (prewarmResults) {
+            object.put("prewarm", new JSONObject(prewarmResults));
+        }
+
+        return object;
+    }
+}
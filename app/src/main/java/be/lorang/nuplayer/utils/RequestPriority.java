@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+/**
+ * Scheduling class of HTTPClient requests, highest priority first
+ *
+ * Requests to the same host are started in priority order and each class may only use part of
+ * the connections to a host (see RequestScheduler), so a few slow background downloads can't
+ * hold up starting a stream.
+ */
+public enum RequestPriority {
+
+    // starting playback: stream info, player tokens
+    PLAYBACK(4),
+
+    // data for what's on screen right now (default)
+    INTERACTIVE(4),
+
+    // data the user will probably look at next, refreshes of stale cache entries
+    PREFETCH(2),
+
+    // bulk downloads and syncs nobody is waiting for
+    BACKGROUND(1);
+
+    private final int maxRequestsPerHost;
+
+    RequestPriority(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    // Concurrent requests per host of this class and all lower classes together
+    int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    boolean isHigherThan(RequestPriority other) {
+        return ordinal() < other.ordinal();
+    }
+
+    // Nobody is waiting for these, they make way for playback (see NetworkGovernor)
+    boolean isDeferrable() {
+        return INTERACTIVE.isHigherThan(this);
+    }
+
+    /**
+     * Look up a priority by name, e.g. from the REQUEST_PRIORITY extra of a service intent
+     *
+     * @param name - String: enum name, can be null
+     * @param defaultPriority - RequestPriority: returned for null or unknown names
+     * @return RequestPriority
+     */
+    public static RequestPriority fromName(String name, RequestPriority defaultPriority) {
+        if(name != null) {
+            for(RequestPriority priority : values()) {
+                if(priority.name().equals(name)) {
+                    return priority;
+                }
+            }
+        }
+        return defaultPriority;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Admission control of HTTPClient requests per host and RequestPriority
+ *
+ * A request has to get a slot before it goes on the network and gives it back when done. Waiting
+ * requests are started highest priority first (first come first served within a priority), at
+ * most MAX_REQUESTS_PER_HOST at a time per host. Lower priorities only get part of those slots,
+ * see RequestPriority.getMaxRequestsPerHost(), so there's always room left for the classes above.
+ *
+ * While a PLAYBACK request is running or waiting on any host, deferrable (PREFETCH and BACKGROUND)
+ * requests don't start at all: they share the same (often slow) link with the stream about to start.
+ * Once the stream plays the NetworkGovernor decides whether they are paused, limited to one at a
+ * time or run as usual. Waiting requests pick up changes of the NetworkGovernor within WAIT_INTERVAL.
+ */
+class RequestScheduler {
+
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    // Waiting requests check for cancellation of their HTTPCall this often (ms)
+    private static final long WAIT_INTERVAL = 250;
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final Map<String, HostQueue> hostQueues = new HashMap<>();
+
+    // PLAYBACK requests running or waiting, on all hosts together
+    private int playbackRequests = 0;
+
+    // deferrable requests running, on all hosts together
+    private int deferrableRequests = 0;
+
+    private static class Ticket implements Comparable<Ticket> {
+        private final RequestPriority priority;
+        private final long order = sequence.getAndIncrement();
+
+        private Ticket(RequestPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if(priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    private static class HostQueue {
+        private final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+        private final int[] running = new int[RequestPriority.values().length];
+
+        // Running requests of this priority and all lower priorities together
+        private int getRunning(RequestPriority priority) {
+            int count = 0;
+            for(int i = priority.ordinal(); i < running.length; i++) {
+                count += running[i];
+            }
+            return count;
+        }
+
+        private boolean isIdle() {
+            return waiting.isEmpty() && getRunning(RequestPriority.PLAYBACK) == 0;
+        }
+    }
+
+    /**
+     * Wait for a slot to request host, call release() when done
+     *
+     * @param host - String: host of the request
+     * @param priority - RequestPriority: priority of the request
+     * @param call - HTTPCall: stop waiting when this call gets cancelled, can be null
+     * @return true when the request can start, false if it got cancelled (or interrupted) while waiting
+     */
+    synchronized boolean acquire(String host, RequestPriority priority, HTTPCall call) {
+
+        HostQueue hostQueue = hostQueues.computeIfAbsent(host, key -> new HostQueue());
+        Ticket ticket = new Ticket(priority);
+
+        hostQueue.waiting.add(ticket);
+        if(priority == RequestPriority.PLAYBACK) {
+            playbackRequests++;
+        }
+
+        boolean started = false;
+        try {
+            while(!canStart(hostQueue, ticket)) {
+                if(call != null && call.isCancelled()) {
+                    return false;
+                }
+                wait(WAIT_INTERVAL);
+            }
+
+            hostQueue.running[priority.ordinal()]++;
+            if(priority.isDeferrable()) {
+                deferrableRequests++;
+            }
+            started = true;
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            hostQueue.waiting.remove(ticket);
+            if(!started) {
+                if(priority == RequestPriority.PLAYBACK) {
+                    playbackRequests--;
+                }
+                if(hostQueue.isIdle()) {
+                    hostQueues.remove(host);
+                }
+            }
+
+            // the next one in line may be able to start as well
+            notifyAll();
+        }
+    }
+
+    synchronized void release(String host, RequestPriority priority) {
+
+        HostQueue hostQueue = hostQueues.get(host);
+        if(hostQueue == null) {
+            return;
+        }
+
+        hostQueue.running[priority.ordinal()]--;
+        if(priority == RequestPriority.PLAYBACK) {
+            playbackRequests--;
+        } else if(priority.isDeferrable()) {
+            deferrableRequests--;
+        }
+
+        if(hostQueue.isIdle()) {
+            hostQueues.remove(host);
+        }
+
+        notifyAll();
+    }
+
+    // Number of requests waiting for a slot, shown in developer mode
+    synchronized int getWaitingCount() {
+        int count = 0;
+        for(HostQueue hostQueue : hostQueues.values()) {
+            count += hostQueue.waiting.size();
+        }
+        return count;
+    }
+
+    private boolean canStart(HostQueue hostQueue, Ticket ticket) {
+
+        // someone with a higher priority (or the same priority, but earlier) goes first
+        if(hostQueue.waiting.peek() != ticket) {
+            return false;
+        }
+
+        if(hostQueue.getRunning(RequestPriority.PLAYBACK) >= MAX_REQUESTS_PER_HOST
+                || hostQueue.getRunning(ticket.priority) >= ticket.priority.getMaxRequestsPerHost()) {
+            return false;
+        }
+
+        if(!ticket.priority.isDeferrable()) {
+            return true;
+        }
+
+        if(playbackRequests > 0) {
+            return false;
+        }
+
+        switch (NetworkGovernor.getMode()) {
+            case PAUSED:
+                return false;
+            case THROTTLED:
+                return deferrableRequests == 0;
+            default:
+                return true;
+        }
+    }
+}
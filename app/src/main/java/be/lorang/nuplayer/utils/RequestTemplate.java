@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+/*
+ * Request templates (see urls.xml) metrics are grouped by, the query string and path
+ * parameters (program name, date, ...) don't matter
+ */
+public enum RequestTemplate {
+
+    CATALOG("search7/suggest catalog"),
+    SERIES_SUGGEST("search7/suggest series"),
+    SUGGEST("search7/suggest"),
+    SEARCH("search7/search"),
+    EPG_SCHEDULE("epg/schedule"),
+    RESUME_POINTS("resume_points"),
+    FAVORITES("favorites"),
+    VIDEO_LOOKUP("search/video"),
+    PAGES("model.json"),
+    VUALTO_TOKENS("vualto tokens"),
+    VUALTO_VIDEOS("vualto videos"),
+    LOGIN("login"),
+    OTHER("other");
+
+    private final String label;
+
+    RequestTemplate(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static RequestTemplate fromUrl(String url) {
+
+        if(url.contains("search7.vrt.be/suggest")) {
+            // the catalog per programType and the series fallback have their own cache policy
+            if(url.contains("facets[programType]=")) {
+                return CATALOG;
+            }
+            if(url.endsWith("facets[categories]=series")) {
+                return SERIES_SUGGEST;
+            }
+            return SUGGEST;
+        }
+
+        if(url.contains("search7.vrt.be/search")) {
+            return SEARCH;
+        }
+
+        if(url.contains("/bin/epg/schedule.")) {
+            return EPG_SCHEDULE;
+        }
+
+        if(url.contains("video-user-data.vrt.be/resume_points")) {
+            return RESUME_POINTS;
+        }
+
+        if(url.contains("video-user-data.vrt.be/favorites")) {
+            return FAVORITES;
+        }
+
+        if(url.contains("search.vrt.be/search")) {
+            return VIDEO_LOOKUP;
+        }
+
+        if(url.contains(".model.json")) {
+            return PAGES;
+        }
+
+        if(url.contains("vualto-video-aggregator-web/rest/external/v2/tokens")) {
+            return VUALTO_TOKENS;
+        }
+
+        if(url.contains("vualto-video-aggregator-web/rest/external/v2/videos")) {
+            return VUALTO_VIDEOS;
+        }
+
+        if(url.contains("login.vrt.be") || url.contains("accounts.vrt.be") || url.contains("/vrtnu/sso/")) {
+            return LOGIN;
+        }
+
+        return OTHER;
+    }
+
+    // Parse name as stored in a cache entry header, unknown names fall back to OTHER
+    static RequestTemplate fromName(String name) {
+        for(RequestTemplate template : values()) {
+            if(template.name().equals(name)) {
+                return template;
+            }
+        }
+        return OTHER;
+    }
+}
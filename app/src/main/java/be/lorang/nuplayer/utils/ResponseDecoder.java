@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a response body straight from the network or cache stream into a value
+ *
+ * HTTPClient decodes into org.json trees by default (JSONStreamParser). Callers that only need a
+ * typed model can pass their own decoder to skip building the tree. Decoded values belong to the
+ * caller: they are not kept in the memory tier and not shared between concurrent requests.
+ */
+public interface ResponseDecoder<T> {
+
+    /**
+     * @param inputStream - InputStream: body to decode, not closed by this method
+     *
+     * @return decoded value or null if the body doesn't contain one
+     */
+    T decode(InputStream inputStream) throws IOException, JSONException;
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import android.util.LruCache;
+
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * In-memory LRU tier in front of the url-cache-* files of HTTPClient
+ *
+ * Holds already parsed responses so repeated lookups of the same URL (season model.json,
+ * EPG day, ...) skip both the disk read and the JSON parse. Entries keep the expiry timestamp
+ * of their disk counterpart so both tiers apply the same TTL.
+ *
+ * Size is accounted in (estimated) bytes: a parsed org.json tree takes a multiple of its
+ * serialized length on the heap.
+ */
+class ResponseMemoryCache {
+
+    private static final int PARSED_SIZE_FACTOR = 4;
+
+    private final LruCache<String, Entry> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private static class Entry {
+        private final JSONObject object;
+        private final long timestampCacheExpires;
+        private final int size;
+
+        private Entry(JSONObject object, long timestampCacheExpires, int size) {
+            this.object = object;
+            this.timestampCacheExpires = timestampCacheExpires;
+            this.size = size;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= timestampCacheExpires;
+        }
+    }
+
+    ResponseMemoryCache(int maxSizeBytes) {
+        cache = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.size;
+            }
+        };
+    }
+
+    // Returns the cached object or null if not present / expired
+    JSONObject get(String url) {
+        Entry entry = cache.get(url);
+
+        if(entry != null && entry.isExpired(System.currentTimeMillis())) {
+            cache.remove(url);
+            entry = null;
+        }
+
+        if(entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return entry.object;
+    }
+
+    void put(String url, JSONObject object, long timestampCacheExpires, int serializedLength) {
+        if(object == null) { return; }
+        int size = (int) Math.min(Integer.MAX_VALUE, (long) serializedLength * PARSED_SIZE_FACTOR);
+        cache.put(url, new Entry(object, timestampCacheExpires, size));
+    }
+
+    void remove(String url) {
+        cache.remove(url);
+    }
+
+    void clear() {
+        cache.evictAll();
+    }
+
+    void clearExpired() {
+        long now = System.currentTimeMillis();
+        for(Map.Entry<String, Entry> entry : cache.snapshot().entrySet()) {
+            if(entry.getValue().isExpired(now)) {
+                cache.remove(entry.getKey());
+            }
+        }
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    String getStatistics() {
+        return cache.size() / 1024 + "KiB of " + cache.maxSize() / 1024 + "KiB, "
+                + hitCount.get() + " hits, " + missCount.get() + " misses";
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package be.lorang.nuplayer.utils;
+
+import com.google.gson.Gson;
+
+/*
+ * Gson for the HttpCookies AuthService and AccessTokenService store as preferences
+ *
+ * A Gson caches the adapters it builds, sharing one instance builds the HttpCookie adapter once
+ * instead of on every call.
+ */
+public final class SharedGson {
+
+    private static final Gson gson = new Gson();
+
+    private SharedGson() {}
+
+    public static Gson getInstance() {
+        return gson;
+    }
+}
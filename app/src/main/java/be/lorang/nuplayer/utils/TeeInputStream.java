@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+ * InputStream that copies every byte read to an OutputStream, used to keep the raw response
+ * body for the cache while it is being decoded
+ */
+class TeeInputStream extends FilterInputStream {
+
+    private final OutputStream copy;
+
+    TeeInputStream(InputStream input, OutputStream copy) {
+        super(input);
+        this.copy = copy;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if(b != -1) {
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if(count > 0) {
+            copy.write(buffer, offset, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes must end up in the copy as well
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        int count = read(buffer, 0, buffer.length);
+        return Math.max(count, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    // Read (and copy) everything that is left in the stream
+    void drain() throws IOException {
+        byte[] buffer = new byte[8192];
+        while(read(buffer, 0, buffer.length) != -1) {
+            // keep reading
+        }
+    }
+}
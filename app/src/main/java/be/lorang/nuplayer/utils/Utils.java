@@ -52,6 +52,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -62,6 +63,9 @@ public class Utils {
 
     private static final String TAG = "Utils";
 
+    // "orig" image urls of the API, with or without scheme
+    private static final Pattern IMAGE_SERVER_ORIG = Pattern.compile("^(https:)?//images\\.vrt\\.be/orig/");
+
     private HttpsURLConnection urlConnection ;
     private BufferedReader reader;
     private OutputStream writer;
@@ -226,6 +230,12 @@ public class Utils {
         return bitmap;
     }
 
+    // Strip the server and size from an image url of the API, the models prepend the image
+    // server defined in urls.xml with a size of their own ('orig' can go up to 18MB each(!))
+    public static String stripImageServer(String imageUrl) {
+        return IMAGE_SERVER_ORIG.matcher(imageUrl).replaceFirst("");
+    }
+
     // Tests if an input string is valid JSON
     public static boolean isStringJSON(String input) {
 
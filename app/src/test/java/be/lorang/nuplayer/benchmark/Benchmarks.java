@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the JMH benchmarks of this package, optionally only the ones matching args[0]
+ * (e.g. "SearchResults"), from the IDE or with the unit test classpath:
+ *
+ *   java -cp <test classpath> be.lorang.nuplayer.benchmark.Benchmarks [regex]
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Benchmarks.class.getPackage().getName() + ".*" + (args.length > 0 ? args[0] : ""))
+                .build();
+        new Runner(options).run();
+    }
+}
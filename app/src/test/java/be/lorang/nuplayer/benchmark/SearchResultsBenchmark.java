@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import be.lorang.nuplayer.model.Video;
+import be.lorang.nuplayer.services.SearchResults;
+import be.lorang.nuplayer.services.StreamService;
+import be.lorang.nuplayer.utils.JSONStreamParser;
+import be.lorang.nuplayer.utils.Utils;
+
+/*
+ * Decoding a search7 page into Videos
+ *
+ * tree: JSONStreamParser into org.json objects, then the Videos from the tree (before)
+ * streaming: SearchResults.Decoder, Videos straight from the JsonReader (after)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResultsBenchmark {
+
+    private static final String IMAGE_SERVER = "https://images.vrt.be/";
+
+    // 10 is a program page, 100 a large page of the latest videos
+    @Param({"10", "100"})
+    public int size;
+
+    private byte[] body;
+    private SearchResults.Decoder decoder;
+
+    @Setup
+    public void setUp() throws Exception {
+        JSONArray results = new JSONArray();
+        for(int i = 0; i < size; i++) {
+            results.put(new JSONObject()
+                    .put("title", "Het journaal 2021030" + (i % 10))
+                    .put("subtitle", "Aflevering " + i)
+                    .put("shortDescription", "Een korte beschrijving van aflevering " + i)
+                    .put("seasonName", "2021")
+                    .put("seasonTitle", "2021")
+                    .put("episodeNumber", i)
+                    .put("duration", 45)
+                    .put("videoThumbnailUrl", "//images.vrt.be/orig/2021/03/01/thumbnail" + i + ".jpg")
+                    .put("videoId", "pbs-pub-" + i + "$vid-" + i)
+                    .put("publicationId", "pbs-pub-" + i)
+                    .put("brands", new JSONArray().put("een").put("canvas"))
+                    .put("programName", "het-journaal")
+                    .put("programTitle", "Het journaal")
+                    .put("assetPath", "/content/dam/vrt/2021/03/01/het-journaal-" + i)
+                    .put("url", "//www.vrt.be/vrtnu/a-z/het-journaal/2021/het-journaal-" + i + "/")
+                    .put("whatsonId", Integer.toString(1000000 + i))
+                    .put("programWhatsonId", "1000")
+                    .put("allowedRegion", "BE")
+                    .put("onTime", "2021-03-01T19:00:00.000+0000")
+                    .put("offTime", "2022-03-01T19:00:00.000+0000")
+                    .put("tags", new JSONArray().put("nieuws").put("actua")));
+        }
+
+        body = new JSONObject()
+                .put("meta", new JSONObject().put("total_results", size))
+                .put("results", results)
+                .put("facets", new JSONObject().put("facets", new JSONArray()))
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+
+        decoder = new SearchResults.Decoder(IMAGE_SERVER);
+    }
+
+    @Benchmark
+    public void tree(Blackhole blackhole) throws Exception {
+        JSONObject object = JSONStreamParser.parse(new ByteArrayInputStream(body));
+        blackhole.consume(object.getJSONObject("meta").getInt("total_results"));
+
+        JSONArray items = object.getJSONArray("results");
+        for(int i = 0; i < items.length(); i++) {
+            blackhole.consume(videoFromTree(items.getJSONObject(i)));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        SearchResults searchResults = decoder.decode(new ByteArrayInputStream(body));
+        blackhole.consume(searchResults.getTotalResults());
+
+        for(Video video : searchResults.getVideos()) {
+            blackhole.consume(video);
+        }
+    }
+
+    // How ProgramService built Videos from the tree before SearchResults
+    private static Video videoFromTree(JSONObject item) throws Exception {
+        String title = item.getString("title");
+        if(endsWithDate(title)) {
+            title = title.substring(0, title.length() - 8);
+        }
+
+        return new Video(
+                title,
+                item.optString("subtitle"),
+                item.optString("seasonName"),
+                item.optString("seasonTitle"),
+                item.optInt("episodeNumber"),
+                item.optInt("duration", 0) * 60,
+                Utils.stripImageServer(item.optString("videoThumbnailUrl")),
+                item.getString("videoId"),
+                item.getString("publicationId"),
+                (String) item.getJSONArray("brands").get(0),
+                item.optString("programName"),
+                item.optString("programTitle"),
+                item.optString("assetPath"),
+                item.optString("url"),
+                item.optString("whatsonId"),
+                item.optString("programWhatsonId"),
+                item.optString("allowedRegion"),
+                item.optString("onTime"),
+                item.optString("offTime"),
+                IMAGE_SERVER,
+                StreamService.STREAMTYPE_ONDEMAND
+        );
+    }
+
+    private static boolean endsWithDate(String title) {
+        if(title.length() < 8) {
+            return false;
+        }
+        for(int i = title.length() - 8; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if(c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
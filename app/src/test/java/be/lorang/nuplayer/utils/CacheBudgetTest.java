@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheBudgetTest {
+
+    // SEARCH gets 40% of it, the live budget is 75%
+    private static final long MAX_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+    private CacheBudget cacheBudget;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = folder.newFolder("cache");
+        cacheBudget = new CacheBudget(MAX_SIZE);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOfTemplate() {
+        assertTrue(cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 150).isEmpty());
+        assertTrue(cacheBudget.record(cacheDir, "b", RequestTemplate.SEARCH, 150).isEmpty());
+        cacheBudget.touch("a");
+
+        assertEquals(Collections.singletonList("b"), cacheBudget.record(cacheDir, "c", RequestTemplate.SEARCH, 150));
+    }
+
+    @Test
+    public void rewriteReplacesSize() {
+        assertTrue(cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 300).isEmpty());
+        assertTrue(cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 350).isEmpty());
+        assertTrue(cacheBudget.record(cacheDir, "b", RequestTemplate.PAGES, 200).isEmpty());
+    }
+
+    @Test
+    public void evictsAcrossTemplatesForLiveBudget() {
+        assertTrue(cacheBudget.record(cacheDir, "search", RequestTemplate.SEARCH, 400).isEmpty());
+        assertTrue(cacheBudget.record(cacheDir, "pages", RequestTemplate.PAGES, 250).isEmpty());
+
+        List<String> evicted = cacheBudget.record(cacheDir, "video", RequestTemplate.VIDEO_LOOKUP, 150);
+        assertEquals(Collections.singletonList("search"), evicted);
+    }
+
+    @Test
+    public void entryLargerThanItsQuotaIsEvictedItself() {
+        assertTrue(cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 100).isEmpty());
+
+        assertEquals(Collections.singletonList("big"), cacheBudget.record(cacheDir, "big", RequestTemplate.SEARCH, 401));
+
+        // the rest of the template is left alone and still accounted for
+        assertTrue(cacheBudget.record(cacheDir, "b", RequestTemplate.SEARCH, 300).isEmpty());
+        assertEquals(Collections.singletonList("a"), cacheBudget.record(cacheDir, "c", RequestTemplate.SEARCH, 100));
+    }
+
+    @Test
+    public void rewriteTooLargeDropsOldAccounting() {
+        assertTrue(cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 300).isEmpty());
+        assertEquals(Collections.singletonList("a"), cacheBudget.record(cacheDir, "a", RequestTemplate.SEARCH, 500));
+
+        assertTrue(cacheBudget.record(cacheDir, "b", RequestTemplate.SEARCH, 400).isEmpty());
+    }
+}
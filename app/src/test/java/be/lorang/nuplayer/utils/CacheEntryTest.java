@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheEntryTest {
+
+    private static final byte[] BODY = ("{\"results\":[" + repeat("{\"title\":\"Het journaal\"},", 50) + "{}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void roundTripCompressed() throws IOException {
+        CacheEntry entry = CacheEntry.create(BODY, 1234567890L, "\"etag\"", "Mon, 01 Mar 2021 19:00:00 GMT",
+                RequestTemplate.SEARCH, true);
+
+        // repetitive JSON has to shrink
+        assertTrue(entry.getStoredLength() < BODY.length);
+
+        CacheEntry read = CacheEntry.read(ByteBuffer.wrap(entry.toByteArray()));
+        assertEquals(1234567890L, read.getTimestampCacheExpires());
+        assertEquals("\"etag\"", read.getETag());
+        assertEquals("Mon, 01 Mar 2021 19:00:00 GMT", read.getLastModified());
+        assertEquals(RequestTemplate.SEARCH, read.getTemplate());
+        assertEquals(BODY.length, read.getContentLength());
+        assertTrue(read.hasValidators());
+        assertArrayEquals(BODY, readFully(read.openBody()));
+    }
+
+    @Test
+    public void roundTripUncompressed() throws IOException {
+        CacheEntry entry = CacheEntry.create(BODY, 0, null, null, RequestTemplate.VIDEO_LOOKUP, false);
+        assertEquals(BODY.length, entry.getStoredLength());
+
+        CacheEntry read = CacheEntry.read(ByteBuffer.wrap(entry.toByteArray()));
+        assertEquals("", read.getETag());
+        assertEquals("", read.getLastModified());
+        assertFalse(read.hasValidators());
+        assertTrue(read.isExpired());
+        assertArrayEquals(BODY, readFully(read.openBody()));
+    }
+
+    @Test
+    public void readHeaderDoesNotNeedTheBody() throws IOException {
+        byte[] bytes = CacheEntry.create(BODY, 42L, "", "", RequestTemplate.PAGES, true).toByteArray();
+
+        // corrupt body, the header is still fine
+        bytes[bytes.length - 1] ^= 0xFF;
+
+        CacheEntry header = CacheEntry.readHeader(ByteBuffer.wrap(bytes));
+        assertEquals(42L, header.getTimestampCacheExpires());
+        assertEquals(RequestTemplate.PAGES, header.getTemplate());
+    }
+
+    @Test
+    public void corruptBodyIsRejected() throws IOException {
+        byte[] bytes = CacheEntry.create(BODY, 0, null, null, RequestTemplate.SEARCH, true).toByteArray();
+        bytes[bytes.length - 1] ^= 0xFF;
+
+        try {
+            CacheEntry.read(ByteBuffer.wrap(bytes));
+            fail("Corrupt body accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Checksum"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedEntryIsRejected() throws IOException {
+        byte[] bytes = CacheEntry.create(BODY, 0, null, null, RequestTemplate.SEARCH, false).toByteArray();
+        ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 10).slice();
+        CacheEntry.read(truncated);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherDataIsRejected() throws IOException {
+        CacheEntry.read(ByteBuffer.wrap(BODY));
+    }
+
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while((length = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+        return output.toByteArray();
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
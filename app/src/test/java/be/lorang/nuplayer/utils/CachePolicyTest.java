@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * The ttl and max-stale of every cached URL of urls.xml, the values the services passed before
+ * they moved into CachePolicy
+ */
+public class CachePolicyTest {
+
+    @Test
+    public void catalog() {
+        assertPolicy("https://search7.vrt.be/suggest?facets[transcodingStatus]=AVAILABLE&facets[programType]=daily",
+                RequestTemplate.CATALOG, 30, 10080);
+    }
+
+    @Test
+    public void series() {
+        assertPolicy("https://www.vrt.be/vrtnu/jcr:content/par.model.json", RequestTemplate.PAGES, 1440, 10080);
+        assertPolicy("https://search7.vrt.be/suggest?facets[transcodingStatus]=AVAILABLE&facets[categories]=series",
+                RequestTemplate.SERIES_SUGGEST, 1440, 10080);
+    }
+
+    @Test
+    public void categories() {
+        assertPolicy("https://www.vrt.be/vrtnu/categorieen.model.json", RequestTemplate.PAGES, 1440, 10080);
+        assertPolicy("https://search7.vrt.be/suggest?facets[transcodingStatus]=AVAILABLE&facets[categories]=series-en-films",
+                RequestTemplate.SUGGEST, 60, 0);
+    }
+
+    @Test
+    public void programs() {
+        assertPolicy("https://www.vrt.be/vrtnu/a-z/het-journaal.model.json", RequestTemplate.PAGES, 1440, 10080);
+        assertPolicy("https://search7.vrt.be/search?orderBy=episodeNumber&order=asc&size=10&from=1&facets[programName]=het-journaal",
+                RequestTemplate.SEARCH, 30, 0);
+        assertPolicy("https://search7.vrt.be/search?i=video&facets[transcodingStatus]=AVAILABLE&order=desc&orderBy=onTime&size=10&from=1",
+                RequestTemplate.SEARCH, 30, 0);
+    }
+
+    @Test
+    public void epgAndVideoLookups() {
+        assertPolicy("https://www.vrt.be/bin/epg/schedule.2021-03-01.json", RequestTemplate.EPG_SCHEDULE, 60, 0);
+        assertPolicy("https://search.vrt.be/search?size=1&facets[url]=//www.vrt.be/vrtnu/a-z/het-journaal/",
+                RequestTemplate.VIDEO_LOOKUP, 43200, 0);
+    }
+
+    @Test
+    public void userDataIsNotCached() {
+        assertFalse(CachePolicy.forUrl("https://video-user-data.vrt.be/favorites").isCacheable());
+        assertFalse(CachePolicy.forUrl("https://video-user-data.vrt.be/resume_points").isCacheable());
+    }
+
+    private static void assertPolicy(String url, RequestTemplate template, int ttl, int maxStale) {
+        assertEquals(template, RequestTemplate.fromUrl(url));
+        CachePolicy cachePolicy = CachePolicy.forUrl(url);
+        assertEquals(url, ttl, cachePolicy.getTtl());
+        assertEquals(url, maxStale, cachePolicy.getMaxStale());
+    }
+}
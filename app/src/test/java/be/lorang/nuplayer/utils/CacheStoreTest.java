@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheStoreTest {
+
+    private static final long SWEEP_LATER = Long.MAX_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = folder.newFolder("cache");
+    }
+
+    @After
+    public void tearDown() {
+        CacheStore.close(cacheDir);
+    }
+
+    @Test
+    public void entriesSurviveReload() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        store.put("a", entry("first a", RequestTemplate.SEARCH), SWEEP_LATER);
+        store.put("b", entry("b", RequestTemplate.PAGES), SWEEP_LATER);
+        store.put("a", entry("second a", RequestTemplate.SEARCH), SWEEP_LATER);
+        store.put("c", entry("c", RequestTemplate.EPG_SCHEDULE), SWEEP_LATER);
+        store.remove("c");
+        long diskSize = store.getDiskSize();
+
+        CacheStore.close(cacheDir);
+        CacheStore reloaded = CacheStore.open(cacheDir);
+
+        // the last write of a key wins, removals stick
+        assertEquals(2, reloaded.getCount());
+        assertEquals("second a", body(reloaded.get("a")));
+        assertEquals("b", body(reloaded.get("b")));
+        assertNull(reloaded.get("c"));
+
+        assertEquals(RequestTemplate.SEARCH, reloaded.getRecords().get("a").getTemplate());
+        assertEquals(RequestTemplate.PAGES, reloaded.getRecords().get("b").getTemplate());
+
+        // overwritten and removed records are garbage again after the reload
+        assertTrue(reloaded.getGarbageSize() > 0);
+        assertEquals(diskSize, reloaded.getDiskSize());
+    }
+
+    @Test
+    public void updatedExpirySurvivesReload() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        store.put("a", entry("a", RequestTemplate.SEARCH), SWEEP_LATER);
+        assertTrue(store.updateExpiry("a", 1234L, SWEEP_LATER));
+        assertFalse(store.updateExpiry("missing", 1234L, SWEEP_LATER));
+
+        CacheStore.close(cacheDir);
+        CacheEntry entry = CacheStore.open(cacheDir).get("a");
+
+        assertNotNull(entry);
+        assertEquals(1234L, entry.getTimestampCacheExpires());
+        assertEquals("a", body(entry));
+    }
+
+    @Test
+    public void removeExpiredSweepsPastTheirSweepTimestamp() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        store.put("old", entry("old", RequestTemplate.SEARCH), 0);
+        store.put("new", entry("new", RequestTemplate.SEARCH), SWEEP_LATER);
+
+        assertEquals(1, store.removeExpired().size());
+        assertNull(store.get("old"));
+        assertNotNull(store.get("new"));
+    }
+
+    @Test
+    public void compactionDropsGarbage() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        for(int i = 0; i < 10; i++) {
+            store.put("key" + i, entry("body " + i, RequestTemplate.SEARCH), SWEEP_LATER);
+        }
+        for(int i = 0; i < 10; i += 2) {
+            store.remove("key" + i);
+        }
+        store.put("key1", entry("body 1 again", RequestTemplate.SEARCH), SWEEP_LATER);
+
+        long liveSize = store.getDiskSize() - store.getGarbageSize();
+
+        // little garbage within a large budget isn't worth a compaction
+        assertFalse(store.needsCompaction(Long.MAX_VALUE));
+        store.compact(Long.MAX_VALUE);
+        assertTrue(store.getGarbageSize() > 0);
+
+        // garbage that pushes the store over its budget is
+        long budget = store.getDiskSize() - 1;
+        assertTrue(store.needsCompaction(budget));
+        store.compact(budget);
+
+        assertEquals(0, store.getGarbageSize());
+        assertEquals(liveSize, store.getDiskSize());
+        assertEquals(5, store.getCount());
+        assertEquals("body 1 again", body(store.get("key1")));
+        assertNull(store.get("key0"));
+
+        // only the compacted segments are left on disk
+        CacheStore.close(cacheDir);
+        CacheStore reloaded = CacheStore.open(cacheDir);
+
+        assertEquals(5, reloaded.getCount());
+        assertEquals(0, reloaded.getGarbageSize());
+        assertEquals(liveSize, reloaded.getDiskSize());
+        for(int i = 1; i < 10; i += 2) {
+            assertNotNull(reloaded.get("key" + i));
+        }
+        assertEquals("body 9", body(reloaded.get("key9")));
+    }
+
+    @Test
+    public void failedCompactionRollsBack() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        for(int i = 0; i < 4; i++) {
+            store.put("key" + i, entry("body " + i, RequestTemplate.SEARCH), SWEEP_LATER);
+        }
+        store.remove("key0");
+
+        long diskSize = store.getDiskSize();
+        long garbageSize = store.getGarbageSize();
+
+        // the segment compaction wants to create can't be opened
+        File blocked = new File(cacheDir, "url-cache-segment-1.pack");
+        assertTrue(blocked.mkdir());
+        store.compact(1);
+
+        assertEquals(garbageSize, store.getGarbageSize());
+        assertEquals(diskSize, store.getDiskSize());
+        assertEquals(3, store.getCount());
+        assertEquals("body 3", body(store.get("key3")));
+
+        // the store still appends to its old segment
+        store.put("key4", entry("body 4", RequestTemplate.SEARCH), SWEEP_LATER);
+        assertTrue(blocked.delete());
+
+        store.compact(1);
+        assertEquals(0, store.getGarbageSize());
+
+        CacheStore.close(cacheDir);
+        CacheStore reloaded = CacheStore.open(cacheDir);
+        assertEquals(4, reloaded.getCount());
+        assertEquals(0, reloaded.getGarbageSize());
+        assertEquals("body 4", body(reloaded.get("key4")));
+    }
+
+    @Test
+    public void clearRemovesEverything() throws IOException {
+        CacheStore store = CacheStore.open(cacheDir);
+        store.put("a", entry("a", RequestTemplate.SEARCH), SWEEP_LATER);
+        store.clear();
+
+        assertEquals(0, store.getCount());
+        assertEquals(0, store.getDiskSize());
+
+        CacheStore.close(cacheDir);
+        assertEquals(0, CacheStore.open(cacheDir).getCount());
+    }
+
+    private static CacheEntry entry(String body, RequestTemplate template) throws IOException {
+        return CacheEntry.create(body.getBytes(StandardCharsets.UTF_8), SWEEP_LATER, null, null, template, true);
+    }
+
+    private static String body(CacheEntry entry) throws IOException {
+        return new String(CacheEntryTest.readFully(entry.openBody()), StandardCharsets.UTF_8);
+    }
+}
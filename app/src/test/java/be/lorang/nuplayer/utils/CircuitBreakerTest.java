@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private long now;
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        now = 1000000;
+        circuitBreaker = new CircuitBreaker("search7.vrt.be", () -> now);
+    }
+
+    @Test
+    public void staysClosedBelowThreshold() {
+        for(int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+
+        // a success resets the consecutive failures
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void opensAtThreshold() {
+        open();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        now += CircuitBreaker.OPEN_DURATION - 1;
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpenAllowsSingleTrial() {
+        open();
+        now += CircuitBreaker.OPEN_DURATION;
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // a trial that never reported back doesn't block the host forever
+        now += CircuitBreaker.OPEN_DURATION;
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void successfulTrialCloses() {
+        open();
+        now += CircuitBreaker.OPEN_DURATION;
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialReopens() {
+        open();
+        now += CircuitBreaker.OPEN_DURATION;
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // open for a full period again, counted from the failed trial
+        now += CircuitBreaker.OPEN_DURATION;
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void resetCloses() {
+        open();
+        circuitBreaker.reset();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+        assertTrue(circuitBreaker.getStatus().endsWith("(0 consecutive, 0 total failures)"));
+    }
+
+    private void open() {
+        for(int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JSONPathExtractorTest {
+
+    @Test
+    public void matchesWithoutWildcard() {
+        assertTrue(JSONPathExtractor.matches(":items", ":items"));
+        assertFalse(JSONPathExtractor.matches(":items", ":items2"));
+        assertFalse(JSONPathExtractor.matches(":items", "items"));
+    }
+
+    @Test
+    public void matchesPrefixAndSuffix() {
+        assertTrue(JSONPathExtractor.matches("episodes_list_*", "episodes_list_268730743"));
+        assertTrue(JSONPathExtractor.matches("episodes_list_*", "episodes_list_"));
+        assertFalse(JSONPathExtractor.matches("episodes_list_*", "episodes_lis"));
+
+        assertTrue(JSONPathExtractor.matches("*_list", "episodes_list"));
+        assertFalse(JSONPathExtractor.matches("*_list", "episodes_list_1"));
+
+        assertTrue(JSONPathExtractor.matches("*", ""));
+        assertTrue(JSONPathExtractor.matches("*", "anything"));
+    }
+
+    @Test
+    public void matchesMultipleWildcards() {
+        assertTrue(JSONPathExtractor.matches("a*b*c", "abc"));
+        assertTrue(JSONPathExtractor.matches("a*b*c", "axxbyyc"));
+        assertTrue(JSONPathExtractor.matches("a*b*c", "abbc"));
+        assertFalse(JSONPathExtractor.matches("a*b*c", "axxc"));
+        assertFalse(JSONPathExtractor.matches("a*b*c", "acb"));
+
+        // prefix and suffix can't overlap
+        assertFalse(JSONPathExtractor.matches("ab*ba", "aba"));
+        assertTrue(JSONPathExtractor.matches("ab*ba", "abba"));
+    }
+
+    @Test
+    public void optReturnsLastMatch() throws IOException, JSONException {
+        JSONPathExtractor extractor = new JSONPathExtractor()
+                .add("list", ":items/episodes_list_*/title")
+                .add("missing", ":items/nothing");
+
+        JSONPathExtractor.Result result = extractor.extract(stream("{\":items\": {"
+                + "\"episodes_list_1\": {\"title\": \"first\"},"
+                + "\"other\": {\"title\": \"skipped\"},"
+                + "\"episodes_list_2\": {\"title\": \"second\"}}}"));
+
+        assertEquals("second", result.optString("list"));
+        assertEquals(Arrays.asList(":items/episodes_list_1/title", ":items/episodes_list_2/title"),
+                result.getPaths("list"));
+        assertEquals("first", result.optAt(":items/episodes_list_1/title"));
+
+        assertFalse(result.has("missing"));
+        assertNull(result.opt("missing"));
+        assertEquals("", result.optString("missing"));
+    }
+
+    @Test
+    public void nestedPathsAndArrays() throws IOException, JSONException {
+        JSONPathExtractor extractor = new JSONPathExtractor()
+                .add("season", "seasons/1")
+                .add("seasonTitle", "seasons/1/title")
+                .add("first", "data/0/id");
+
+        JSONPathExtractor.Result result = extractor.extract(stream(
+                "{\"seasons\": [{\"title\": \"2020\"}, {\"title\": \"2021\"}]}"));
+        assertEquals("2021", result.optJSONObject("season").getString("title"));
+        assertEquals("2021", result.optString("seasonTitle"));
+        assertEquals("seasons", JSONPathExtractor.getParentPath(result.getPaths("season").get(0)));
+
+        // top level arrays are wrapped in "data"
+        result = extractor.extract(stream("[{\"id\": 5}, {\"id\": 6}]"));
+        assertEquals(5, result.opt("first"));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Geert Lorang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package be.lorang.nuplayer.utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JSONStreamParserTest {
+
+    @Test
+    public void numberTypesMatchJSONTokener() throws IOException, JSONException {
+        JSONObject object = parse("{\"int\": 42, \"negative\": -7, \"long\": 1614625200000,"
+                + " \"huge\": 123456789012345678901234, \"decimal\": 1.5, \"exponent\": 1e3}");
+
+        assertEquals(Integer.valueOf(42), object.get("int"));
+        assertEquals(Integer.valueOf(-7), object.get("negative"));
+        assertEquals(Long.valueOf(1614625200000L), object.get("long"));
+        assertTrue(object.get("huge") instanceof Double);
+        assertEquals(Double.valueOf(1.5), object.get("decimal"));
+        assertEquals(Double.valueOf(1000), object.get("exponent"));
+    }
+
+    @Test
+    public void integerBoundaries() throws IOException, JSONException {
+        JSONObject object = parse("{\"max\": 2147483647, \"over\": 2147483648, \"min\": -2147483648}");
+
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), object.get("max"));
+        assertEquals(Long.valueOf(Integer.MAX_VALUE + 1L), object.get("over"));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), object.get("min"));
+    }
+
+    @Test
+    public void otherValues() throws IOException, JSONException {
+        JSONObject object = parse("{\"string\": \"Het journaal\", \"true\": true, \"null\": null,"
+                + " \"object\": {\"a\": [1, \"b\"]}}");
+
+        assertEquals("Het journaal", object.get("string"));
+        assertEquals(Boolean.TRUE, object.get("true"));
+        assertSame(JSONObject.NULL, object.get("null"));
+
+        JSONArray array = object.getJSONObject("object").getJSONArray("a");
+        assertEquals(2, array.length());
+        assertEquals(1, array.get(0));
+        assertEquals("b", array.get(1));
+    }
+
+    @Test
+    public void arrayIsWrappedInData() throws IOException, JSONException {
+        JSONObject object = parse("[{\"title\": \"a\"}, {\"title\": \"b\"}]");
+
+        JSONArray data = object.getJSONArray("data");
+        assertEquals(2, data.length());
+        assertEquals("b", data.getJSONObject(1).getString("title"));
+    }
+
+    @Test
+    public void scalarDocumentIsNull() throws IOException, JSONException {
+        assertNull(parse("\"not an object\""));
+        assertNull(parse("42"));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDocumentFails() throws IOException, JSONException {
+        parse("{\"a\": [1, 2");
+    }
+
+    private static JSONObject parse(String json) throws IOException, JSONException {
+        return JSONStreamParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}